@@ -0,0 +1,96 @@
+package com.search;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.security.Principal;
+import java.util.*;
+
+import javax.faces.application.Application;
+import javax.faces.application.FacesMessage;
+import javax.faces.component.UIViewRoot;
+import javax.faces.context.ExternalContext;
+import javax.faces.context.FacesContext;
+import javax.faces.context.ResponseStream;
+import javax.faces.context.ResponseWriter;
+import javax.faces.render.RenderKit;
+
+/**
+ * Minimal FacesContext/ExternalContext stand-in for driving the settings
+ * bean outside a container. Only the request and session maps are backed;
+ * everything else is inert.
+ */
+class BenchFacesContext extends FacesContext {
+
+    private final BenchExternalContext external = new BenchExternalContext();
+
+    BenchFacesContext() {
+        setCurrentInstance(this);
+    }
+
+    /* Fresh request scope, same session */
+    void newRequest() { external.requestMap.clear(); }
+
+    Map<String, Object> requestMap() { return external.requestMap; }
+
+    @Override public ExternalContext getExternalContext() { return external; }
+    @Override public Application getApplication() { return null; }
+    @Override public Iterator<String> getClientIdsWithMessages() { return Collections.<String>emptyList().iterator(); }
+    @Override public FacesMessage.Severity getMaximumSeverity() { return null; }
+    @Override public Iterator<FacesMessage> getMessages() { return Collections.<FacesMessage>emptyList().iterator(); }
+    @Override public Iterator<FacesMessage> getMessages(String clientId) { return getMessages(); }
+    @Override public RenderKit getRenderKit() { return null; }
+    @Override public boolean getRenderResponse() { return false; }
+    @Override public boolean getResponseComplete() { return false; }
+    @Override public ResponseStream getResponseStream() { return null; }
+    @Override public void setResponseStream(ResponseStream responseStream) { }
+    @Override public ResponseWriter getResponseWriter() { return null; }
+    @Override public void setResponseWriter(ResponseWriter responseWriter) { }
+    @Override public UIViewRoot getViewRoot() { return null; }
+    @Override public void setViewRoot(UIViewRoot root) { }
+    @Override public void addMessage(String clientId, FacesMessage message) { }
+    @Override public void release() { setCurrentInstance(null); }
+    @Override public void renderResponse() { }
+    @Override public void responseComplete() { }
+
+    static class BenchExternalContext extends ExternalContext {
+        final Map<String, Object> requestMap = new HashMap<>();
+        final Map<String, Object> sessionMap = new HashMap<>();
+        final Map<String, Object> applicationMap = new HashMap<>();
+
+        @Override public Map<String, Object> getRequestMap() { return requestMap; }
+        @Override public Map<String, Object> getSessionMap() { return sessionMap; }
+        @Override public Map<String, Object> getApplicationMap() { return applicationMap; }
+
+        @Override public void dispatch(String path) { }
+        @Override public String encodeActionURL(String url) { return url; }
+        @Override public String encodeNamespace(String name) { return name; }
+        @Override public String encodeResourceURL(String url) { return url; }
+        @Override public String getAuthType() { return null; }
+        @Override public Object getContext() { return null; }
+        @Override public String getInitParameter(String name) { return null; }
+        @Override public Map<?, ?> getInitParameterMap() { return Collections.emptyMap(); }
+        @Override public String getRemoteUser() { return null; }
+        @Override public Object getRequest() { return null; }
+        @Override public String getRequestContextPath() { return ""; }
+        @Override public Map<String, Object> getRequestCookieMap() { return Collections.emptyMap(); }
+        @Override public Map<String, String> getRequestHeaderMap() { return Collections.emptyMap(); }
+        @Override public Map<String, String[]> getRequestHeaderValuesMap() { return Collections.emptyMap(); }
+        @Override public Locale getRequestLocale() { return Locale.ROOT; }
+        @Override public Iterator<Locale> getRequestLocales() { return Collections.singletonList(Locale.ROOT).iterator(); }
+        @Override public Map<String, String> getRequestParameterMap() { return Collections.emptyMap(); }
+        @Override public Iterator<String> getRequestParameterNames() { return Collections.<String>emptyList().iterator(); }
+        @Override public Map<String, String[]> getRequestParameterValuesMap() { return Collections.emptyMap(); }
+        @Override public String getRequestPathInfo() { return null; }
+        @Override public String getRequestServletPath() { return ""; }
+        @Override public URL getResource(String path) { return null; }
+        @Override public InputStream getResourceAsStream(String path) { return null; }
+        @Override public Set<String> getResourcePaths(String path) { return Collections.emptySet(); }
+        @Override public Object getResponse() { return null; }
+        @Override public Object getSession(boolean create) { return null; }
+        @Override public Principal getUserPrincipal() { return null; }
+        @Override public boolean isUserInRole(String role) { return false; }
+        @Override public void log(String message) { }
+        @Override public void log(String message, Throwable exception) { }
+        @Override public void redirect(String url) { }
+    }
+}
@@ -0,0 +1,191 @@
+package com.search;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Microbenchmarks for the settings bean's hot paths against synthetic
+ * catalogs, run outside Tomcat with {@link BenchFacesContext}.
+ *
+ * For each catalog size it reports throughput, average latency and bytes
+ * allocated per operation (from the per-thread allocation counter, the same
+ * figure JMH's gc profiler prints as gc.alloc.rate.norm). The correctness
+ * checks in {@link SelfServiceChecks} run first and stop the run on a failure.
+ *
+ * Run from the project root (sizes and timings are optional):
+ * <pre>
+ *   javac -encoding UTF-8 -d /tmp/bench -cp "src/main/webapp/lib/*:&lt;servlet-api&gt;:&lt;annotation-api&gt;" \
+ *       $(find src/main/java src/bench/java -name '*.java')
+ *   java -Xmx6g -cp "/tmp/bench:src/main/webapp/lib/*" \
+ *       -Dbench.warmup=1000 -Dbench.time=3000 com.search.SelfServiceBenchmark 40,10000,100000,1000000
+ * </pre>
+ */
+public final class SelfServiceBenchmark {
+
+    private static final long WARMUP_MS = Long.getLong("bench.warmup", 1000L);
+    private static final long MEASURE_MS = Long.getLong("bench.time", 2000L);
+
+    /* Typical chip-editor input, including prefixes of one another and a miss */
+    private static final String[] QUERIES = {
+        "p", "pr", "pre", "pres", "presc", "refill", "insur", "insurance claim", "claim insurance", "refill limit", "°c", "₹", "delivery", "zzz"
+    };
+
+    /* Misspelled input for the fuzzy mode */
+    private static final String[] TYPOS = {
+        "perscription", "vacinaton", "refil", "insurence claim", "delivry", "apointment"
+    };
+
+    private static volatile long sink;
+
+    private SelfServiceBenchmark() { }
+
+    public static void main(String[] args) throws InterruptedException {
+        // timings of wrong answers are worthless: fail first if a round trip is broken
+        SelfServiceChecks.run();
+        String sizes = args.length > 0 ? args[0] : "40,10000,100000,1000000";
+        System.out.printf("%-34s %9s %14s %12s %12s%n", "benchmark", "size", "ops/s", "avg us/op", "B/op");
+        for (String size : sizes.split(",")) {
+            run(Integer.parseInt(size.trim()));
+        }
+    }
+
+    private static void run(int size) {
+        NotificationCatalog catalog = SyntheticCatalog.create(size);
+        CatalogService.getInstance().setCatalog(catalog);
+
+        BenchFacesContext faces = new BenchFacesContext();
+        SelfServiceSettingsBBean bean = new SelfServiceSettingsBBean();
+        bean.init();
+
+        // every 10th event code and every 100th notification selected
+        StringBuilder codes = new StringBuilder();
+        List<String> eventCodes = catalog.getEventCodes();
+        for (int i = 0; i < eventCodes.size(); i += 10) {
+            if (codes.length() > 0) codes.append(',');
+            codes.append(eventCodes.get(i));
+        }
+        String codesString = codes.toString();
+        bean.setSelectedEventCodesString(codesString);
+        List<String> messages = catalog.getNotificationMessages();
+        for (int i = 0; i < messages.size(); i += 100) {
+            bean.getSelectedNotificationMap().put(messages.get(i), true);
+        }
+
+        int[] cursor = new int[1];
+
+        measure("fetchNotificationSuggestions", size, () -> {
+            faces.newRequest();
+            bean.setChipQuery(QUERIES[cursor[0]++ % QUERIES.length]);
+            bean.fetchNotificationSuggestions();
+            sink += faces.requestMap().get("notifJson").hashCode();
+        });
+
+        measure("suggestionsJson (uncached)", size, () -> {
+            String q = QUERIES[cursor[0]++ % QUERIES.length];
+            sink += catalog.suggestionsJson(q, 0, NotificationCatalog.DEFAULT_SUGGESTION_LIMIT, null, false).length();
+        });
+
+        measure("suggestionsJson (fuzzy, uncached)", size, () -> {
+            String q = TYPOS[cursor[0]++ % TYPOS.length];
+            sink += catalog.suggestionsJson(q, 0, NotificationCatalog.DEFAULT_SUGGESTION_LIMIT, null, true).length();
+        });
+
+        Path indexFile = writeIndex(catalog);
+        measure("CatalogIndexFile.open", size, () -> {
+            try {
+                sink += CatalogIndexFile.open(indexFile).getVersion();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        NotificationCatalog mapped = openIndex(indexFile);
+        measure("suggestionsJson (mapped, uncached)", size, () -> {
+            String q = QUERIES[cursor[0]++ % QUERIES.length];
+            sink += mapped.suggestionsJson(q, 0, NotificationCatalog.DEFAULT_SUGGESTION_LIMIT, null, false).length();
+        });
+
+        measure("escapeJson", size, () ->
+            sink += NotificationCatalog.quoteJson(messages.get(cursor[0]++ % messages.size())).length());
+
+        measure("setSelectedEventCodesString", size, () -> {
+            bean.setSelectedEventCodesString(codesString);
+            sink += bean.getSelectedEventCodesString().length();
+        });
+
+        String codesEncoded = SelectionCodec.encode(bitsOf(catalog, CatalogSection.EVENT_CODES, codesString));
+        measure("setSelectedEventCodes (1r/1b)", size, () -> {
+            bean.setSelectedEventCodesString(codesEncoded);
+            sink += ((SelectionSet) bean.getSelectedEventCodesMap()).selectedCount();
+        });
+
+        measure("getSelectedNotificationList", size, () ->
+            sink += bean.getSelectedNotificationList().size());
+
+        measure("printSelections", size, () -> {
+            bean.printSelections();
+            sink += bean.getSelectedSummary().length();
+        });
+
+        faces.release();
+    }
+
+    private static Path writeIndex(NotificationCatalog catalog) {
+        try {
+            Path file = Files.createTempFile("bench-catalog", ".idx");
+            file.toFile().deleteOnExit();
+            CatalogIndexFile.write(catalog, file);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static NotificationCatalog openIndex(Path file) {
+        try {
+            return CatalogIndexFile.open(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static BitSet bitsOf(NotificationCatalog catalog, CatalogSection section, String joined) {
+        BitSet bits = new BitSet();
+        for (String label : joined.split(",")) bits.set(catalog.ordinalOf(section, label));
+        return bits;
+    }
+
+    /* Warm up, then run the op in batches until MEASURE_MS has elapsed */
+    private static void measure(String name, int size, Runnable op) {
+        loop(op, WARMUP_MS);
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long allocBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long ops = loop(op, MEASURE_MS);
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocBefore;
+
+        System.out.printf("%-34s %9d %14.1f %12.3f %12d%n", name, size,
+                ops * 1e9 / elapsed, elapsed / 1e3 / ops, allocated / ops);
+    }
+
+    private static long loop(Runnable op, long millis) {
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+        long ops = 0;
+        int batch = 1;
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < batch; i++) op.run();
+            ops += batch;
+            if (batch < 1024) batch <<= 1;
+        }
+        return ops;
+    }
+}
@@ -0,0 +1,276 @@
+package com.search;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+import org.ajax4jsf.model.SequenceRange;
+
+/**
+ * Self-checking round trips for the bit- and offset-level code the
+ * benchmarks time: each check compares against a plain reference
+ * ({@link BitSet}, {@link HashMap}, a brute-force filter) on seeded random
+ * data and throws on the first difference, so a regression fails loudly
+ * instead of just running fast. {@link SelfServiceBenchmark} runs them
+ * first; they also run on their own:
+ * <pre>
+ *   java -cp "/tmp/bench:src/main/webapp/lib/*" com.search.SelfServiceChecks
+ * </pre>
+ */
+public final class SelfServiceChecks {
+
+    private SelfServiceChecks() { }
+
+    public static void main(String[] args) throws InterruptedException {
+        run();
+    }
+
+    static void run() throws InterruptedException {
+        NotificationCatalog previous = CatalogService.getInstance().getCatalog();
+        try {
+            selectionCodec();
+            rowBitmap();
+            suggestionCache();
+            ordinalMap();
+            selectionRemap();
+            keysetPaging();
+        } finally {
+            CatalogService.getInstance().setCatalog(previous);
+        }
+        System.out.println("checks passed");
+    }
+
+    /* ===== SelectionCodec: both encodings decode to the bits they encode ===== */
+    private static void selectionCodec() {
+        Random random = new Random(1);
+        for (int round = 0; round < 2000; round++) {
+            int limit = 1 + random.nextInt(round % 2 == 0 ? 64 : 5000);
+            BitSet bits = randomBits(random, limit);
+            for (String encoded : new String[] {
+                    SelectionCodec.encode(bits), SelectionCodec.encodeRuns(bits), SelectionCodec.encodeBitmask(bits) }) {
+                check(SelectionCodec.isEncoded(encoded), "not recognized as encoded: " + encoded);
+                check(bits.equals(SelectionCodec.decode(encoded, limit)), "codec round trip of " + bits + " via " + encoded);
+            }
+            check(SelectionCodec.encode(bits).length() <= SelectionCodec.encodeRuns(bits).length()
+                    && SelectionCodec.encode(bits).length() <= SelectionCodec.encodeBitmask(bits).length(),
+                    "encode() did not pick the shorter form for " + bits);
+        }
+        check(SelectionCodec.decode("1r:!", 10) == null, "malformed runs accepted");
+        check(SelectionCodec.decode("1b:!", 10) == null, "malformed bitmask accepted");
+    }
+
+    /* ===== RowBitmap: every container kind answers like a BitSet ===== */
+    private static void rowBitmap() {
+        Random random = new Random(2);
+        for (int round = 0; round < 100; round++) {
+            int n = 1 + random.nextInt(300_000);
+            BitSet a = randomBits(random, n), b = randomBits(random, n);
+            RowBitmap ra = bitmap(a), rb = bitmap(b);
+            sameBits(a, ra, n, random, "of");
+
+            BitSet or = (BitSet) a.clone();
+            or.or(b);
+            sameBits(or, RowBitmap.or(Arrays.asList(ra, rb)), n, random, "or");
+            BitSet and = (BitSet) a.clone();
+            and.and(b);
+            sameBits(and, RowBitmap.and(Arrays.asList(ra, rb)), n, random, "and");
+        }
+        BitSet all = new BitSet();
+        all.set(0, 200_000);
+        sameBits(all, RowBitmap.range(200_000), 200_000, random, "range");
+    }
+
+    private static RowBitmap bitmap(BitSet bits) {
+        int[] values = bits.stream().toArray();
+        return RowBitmap.of(values, 0, values.length);
+    }
+
+    private static void sameBits(BitSet expected, RowBitmap actual, int n, Random random, String what) {
+        check(actual.cardinality() == expected.cardinality(), what + ": cardinality");
+        check(actual.isEmpty() == expected.isEmpty(), what + ": isEmpty");
+        int rank = 0;
+        for (int v = expected.nextSetBit(0); v >= 0; v = expected.nextSetBit(v + 1), rank++) {
+            check(actual.select(rank) == v, what + ": select(" + rank + ")");
+        }
+        for (int probe = 0; probe < 200; probe++) {
+            int v = random.nextInt(n + 1);
+            check(actual.contains(v) == expected.get(v), what + ": contains(" + v + ")");
+            check(actual.rank(v) == expected.get(0, v).cardinality(), what + ": rank(" + v + ")");
+            int next = expected.nextSetBit(v);
+            check(actual.next(v) == next, what + ": next(" + v + ")");
+        }
+    }
+
+    /* ===== SuggestionCache: bounds and char accounting through puts, evictions and clears ===== */
+    private static void suggestionCache() {
+        Random random = new Random(3);
+        int maxEntries = 64;
+        long maxChars = 4000;
+        SuggestionCache cache = new SuggestionCache(maxEntries, maxChars);
+        Set<String> keys = new HashSet<>();
+        for (int op = 0; op < 50_000; op++) {
+            String key = "q" + (int) Math.abs(random.nextGaussian() * 100);
+            if (cache.get(key) == null) {
+                cache.put(key, value(key));
+                keys.add(key);
+            }
+            if (op % 10_000 == 9_999) cache.clear();
+            if (op % 500 == 0) {
+                long chars = 0;
+                int size = 0;
+                for (String k : keys) {
+                    String json = cache.get(k);
+                    if (json == null) continue;
+                    check(json.equals(value(k)), "cache returned another key's value for " + k);
+                    chars += json.length();
+                    size++;
+                }
+                check(cache.getSize() == size, "cache size " + cache.getSize() + " != entries " + size);
+                check(cache.getChars() == chars, "cache chars " + cache.getChars() + " != stored " + chars);
+                check(size <= maxEntries && chars <= maxChars, "cache over its bounds");
+            }
+        }
+    }
+
+    private static String value(String key) {
+        StringBuilder sb = new StringBuilder(key).append(':');
+        for (int i = key.hashCode() & 63; i > 0; i--) sb.append('x');
+        return sb.toString();
+    }
+
+    /* ===== Notification ordinal map: a plain map of the distinct labels to their first ordinal ===== */
+    private static void ordinalMap() {
+        NotificationCatalog catalog = new NotificationCatalog(Collections.<String>emptyList(),
+                Collections.<String>emptyList(), Arrays.asList("b", "a", "b", "c", "a"), Collections.<String, String>emptyMap());
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("b", 0);
+        expected.put("a", 1);
+        expected.put("c", 3);
+        Map<String, Integer> ordinals = catalog.ordinals(CatalogSection.NOTIFICATIONS);
+        check(ordinals.size() == 3 && !ordinals.isEmpty(), "ordinal map size");
+        check(ordinals.equals(expected) && expected.equals(ordinals), "ordinal map entries");
+        check(ordinals.hashCode() == expected.hashCode(), "ordinal map hashCode");
+        check(ordinals.toString().length() > 2, "ordinal map toString");
+    }
+
+    /* ===== SelectionSet: selections survive a reload by label, with writes racing it ===== */
+    private static void selectionRemap() throws InterruptedException {
+        List<String> before = new ArrayList<>(), after = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) before.add("message " + i);
+        // the reload drops every 7th message and reverses the rest
+        for (int i = before.size() - 1; i >= 0; i--) if (i % 7 != 0) after.add(before.get(i));
+        NotificationCatalog first = catalog(before), second = catalog(after);
+        CatalogService.getInstance().setCatalog(first);
+
+        SelectionSet selection = new SelectionSet(CatalogSection.NOTIFICATIONS);
+        int threads = 4;
+        CountDownLatch started = new CountDownLatch(threads);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            Thread writer = new Thread(() -> {
+                started.countDown();
+                for (int i = offset; i < before.size(); i += threads) selection.put(before.get(i), true);
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        started.await();
+        CatalogService.getInstance().publish(second);
+        for (Thread writer : writers) writer.join();
+
+        Set<String> expected = new HashSet<>(after);
+        check(new HashSet<>(selection.selectedLabels()).equals(expected),
+                "selection lost writes across a reload: " + selection.selectedCount() + " of " + expected.size());
+        check(SelectionCodec.decode(SelectionCodec.encode(selection.toBitSet()), after.size())
+                .equals(selection.toBitSet()), "selection codec round trip after a reload");
+    }
+
+    private static NotificationCatalog catalog(List<String> messages) {
+        return new NotificationCatalog(Collections.<String>emptyList(), Collections.<String>emptyList(),
+                messages, Collections.<String, String>emptyMap());
+    }
+
+    /* ===== EventConfigDataModel: keyset pages are the brute-force filtered, sorted rows ===== */
+    private static void keysetPaging() {
+        Random random = new Random(4);
+        int n = 20_000;
+        List<String> stores = new ArrayList<>(), codes = new ArrayList<>(), pickups = new ArrayList<>();
+        for (int i = 0; i < 50; i++) stores.add("Store " + random.nextInt(1000));
+        for (int i = 0; i < 20; i++) {
+            codes.add("EVT" + i);
+            pickups.add("Pickup " + i);
+        }
+        int[] ids = new int[n], store = new int[n], code = new int[n], pickup = new int[n], notification = new int[n],
+                reasons = new int[n];
+        for (int row = 0; row < n; row++) {
+            ids[row] = row * 2 + 1;
+            store[row] = random.nextInt(stores.size());
+            code[row] = random.nextInt(codes.size());
+            pickup[row] = random.nextInt(pickups.size());
+            reasons[row] = -1;
+        }
+        NotificationCatalog catalog = new NotificationCatalog(codes, pickups, Collections.<String, String>emptyMap(),
+                Collections.<String>emptyList(), Collections.<String, String>emptyMap(),
+                NotificationCatalog.Notifications.build(Collections.singletonList("message")), stores,
+                EventConfigTable.of(ids, store, code, pickup, notification, reasons, Collections.<String>emptyList()));
+        CatalogService.getInstance().setCatalog(catalog);
+
+        SelectionSet selectedStores = new SelectionSet(CatalogSection.STORES);
+        EventConfigDataModel model = new EventConfigDataModel(selectedStores,
+                new SelectionSet(CatalogSection.EVENT_CODES), new SelectionSet(CatalogSection.PICKUP_TYPES),
+                new SelectionSet(CatalogSection.NOTIFICATIONS));
+        for (int s = 0; s < 10; s++) selectedStores.set(random.nextInt(stores.size()), true);
+        BitSet filter = selectedStores.toBitSet();
+
+        for (boolean sorted : new boolean[] { false, true }) {
+            model.setSort(sorted ? EventConfigSort.Column.STORE : null, sorted);
+            List<Integer> expected = new ArrayList<>();
+            for (int row = 0; row < n; row++) if (filter.get(store[row])) expected.add(row);
+            if (sorted) {
+                Comparator<Integer> byStore = Comparator.comparingLong(
+                        row -> catalog.eventConfigSort().key(EventConfigSort.Column.STORE, row));
+                expected.sort(byStore.reversed());
+            }
+            check(model.getRowCount() == expected.size(), "row count");
+            int rows = 25;
+            for (int first = 0; first < expected.size(); first += rows) {
+                List<Integer> page = new ArrayList<>();
+                try {
+                    model.walk(null, (context, key, argument) -> page.add((Integer) key),
+                            new SequenceRange(first, rows), null);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                for (int i = 0; i < page.size(); i++) {
+                    check(page.get(i) == ids[expected.get(first + i)], "page at " + first + " (sorted " + sorted + ")");
+                }
+                check(page.size() == Math.min(rows, expected.size() - first), "page size at " + first);
+            }
+        }
+    }
+
+    private static BitSet randomBits(Random random, int n) {
+        BitSet bits = new BitSet();
+        switch (random.nextInt(4)) {
+            case 0: // sparse
+                for (int i = random.nextInt(50); i > 0; i--) bits.set(random.nextInt(n));
+                break;
+            case 1: // dense
+                for (int i = 0; i < n; i++) if (random.nextInt(3) > 0) bits.set(i);
+                break;
+            case 2: // runs
+                for (int at = random.nextInt(100); at < n; at += 1 + random.nextInt(2000)) {
+                    bits.set(at, Math.min(n, at + 1 + random.nextInt(1000)));
+                }
+                break;
+            default: // empty
+        }
+        return bits;
+    }
+
+    private static void check(boolean ok, String message) {
+        if (!ok) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,61 @@
+package com.search;
+
+import java.util.*;
+
+/**
+ * Deterministic synthetic catalogs for the benchmarks. Messages are built
+ * from pharmacy-style words plus the non-ASCII symbols the real catalog is
+ * full of (₹, °, ℞, ±, smart quotes, en dashes), so escaping and lowercasing
+ * costs are representative.
+ */
+final class SyntheticCatalog {
+
+    private static final String[] WORDS = {
+        "prescription", "ready", "pickup", "medicine", "stock", "urgent", "refill", "reminder",
+        "order", "shipped", "discount", "insurance", "claim", "approved", "payment", "pending",
+        "delivery", "scheduled", "package", "delayed", "appointment", "lab", "results", "vaccination",
+        "dosage", "change", "generic", "alternative", "authorization", "required", "copay", "pharmacy",
+        "transfer", "expired", "doctor", "consultation", "allergic", "warning", "temperature", "limit",
+        "signature", "handling", "controlled", "substance", "notice", "verification", "counter", "store"
+    };
+
+    private static final String[] SYMBOLS = {
+        "₹150", "2°C – 8°C", "(℞)", "± 5mg", "“smart”", "‘quoted’", "→", "µg", "3/3", "@ counter"
+    };
+
+    private SyntheticCatalog() { }
+
+    static NotificationCatalog create(int size) {
+        Random random = new Random(size);
+        List<String> eventCodes = new ArrayList<>(size);
+        List<String> pickupTypes = new ArrayList<>(size);
+        List<String> messages = new ArrayList<>(size);
+        Map<String, String> tooltips = new HashMap<>();
+
+        for (int i = 0; i < size; i++) {
+            String word = capitalize(WORDS[random.nextInt(WORDS.length)]);
+            eventCodes.add(String.format("EVT%07d - %s", i + 1, word));
+            pickupTypes.add(word + " Pickup " + (i + 1));
+            messages.add(message(random, i));
+        }
+        tooltips.put(eventCodes.get(0), "Tooltip for " + eventCodes.get(0));
+        return new NotificationCatalog(eventCodes, pickupTypes, messages, tooltips);
+    }
+
+    private static String message(Random random, int ordinal) {
+        StringBuilder sb = new StringBuilder(48);
+        int words = 3 + random.nextInt(4);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) sb.append(' ');
+            String word = WORDS[random.nextInt(WORDS.length)];
+            sb.append(w == 0 ? capitalize(word) : word);
+        }
+        if (random.nextInt(3) == 0) sb.append(' ').append(SYMBOLS[random.nextInt(SYMBOLS.length)]);
+        // keep labels unique so label -> ordinal lookups are one-to-one
+        return sb.append(" #").append(ordinal).toString();
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
@@ -0,0 +1,45 @@
+package com.search;
+
+import javax.el.MethodExpression;
+import javax.faces.component.ActionSource2;
+import javax.faces.context.FacesContext;
+import javax.faces.event.AbortProcessingException;
+import javax.faces.event.ActionEvent;
+import javax.faces.event.ActionListener;
+
+/**
+ * Decorates the application's default {@link ActionListener} to note which
+ * action a request invoked (e.g. {@code selfServiceSettingsBBean.printSelections}),
+ * so {@link PhaseTimingListener} can break its phase timings down by action.
+ * Registered in faces-config.xml; JSF passes the default listener in.
+ */
+public class ActionNameListener implements ActionListener {
+
+    static final String ACTION_KEY = ActionNameListener.class.getName();
+
+    private final ActionListener delegate;
+
+    public ActionNameListener(ActionListener delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void processAction(ActionEvent event) throws AbortProcessingException {
+        if (event.getComponent() instanceof ActionSource2) {
+            MethodExpression action = ((ActionSource2) event.getComponent()).getActionExpression();
+            if (action != null) {
+                FacesContext.getCurrentInstance().getExternalContext().getRequestMap()
+                        .put(ACTION_KEY, name(action.getExpressionString()));
+            }
+        }
+        delegate.processAction(event);
+    }
+
+    /* "#{bean.method}" -> "bean.method"; literal outcomes stay as they are */
+    private static String name(String expression) {
+        if (expression.startsWith("#{") && expression.endsWith("}")) {
+            return expression.substring(2, expression.length() - 1);
+        }
+        return expression;
+    }
+}
@@ -0,0 +1,258 @@
+package com.search;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Prebuilt, memory-mapped form of a {@link NotificationCatalog}.
+ *
+ * The builder ({@link #main}, run offline or at deploy time) writes the
+ * catalog strings, the normalized search keys, the pre-escaped JSON
+ * fragments, both search indexes and the event configuration columns into
+ * one binary file. The webapp then
+ * {@link #open}s it with a read-only {@link MappedByteBuffer}: nothing is
+ * parsed or built, the notification tables stay in the page cache instead
+ * of the heap, and startup takes milliseconds whatever the catalog size.
+ * Point {@code com.search.CATALOG_FILE} at a {@code .idx} file to use it;
+ * it is watched and reloaded like the properties file.
+ *
+ * Layout (little-endian): magic, format version, then arrays in a fixed
+ * order, each as an int element count followed by its elements starting
+ * on an 8-byte boundary. Text tables are an offsets array and a char array.
+ * The file is written next to the target and renamed into place, so a
+ * running webapp never maps a half-written file.
+ */
+public final class CatalogIndexFile {
+
+    private static final int MAGIC = 0x53424958; // "SBIX"
+
+    /* Bump when the layout or the key normalization changes */
+    static final int FORMAT_VERSION = 4;
+
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private CatalogIndexFile() { }
+
+    /**
+     * Builds an index file from a catalog properties file:
+     * {@code java com.search.CatalogIndexFile catalog.properties catalog.idx}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: CatalogIndexFile <catalog.properties> <catalog.idx>");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        NotificationCatalog catalog = CatalogLoader.load(Paths.get(args[0]));
+        write(catalog, Paths.get(args[1]));
+        System.out.printf("%s: %d notification messages, %d configurations, %d bytes, %d ms%n", args[1],
+                catalog.getNotificationMessages().size(), catalog.getEventConfigs().size(), Files.size(Paths.get(args[1])),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** Writes {@code catalog} to {@code file}, replacing it atomically. */
+    public static void write(NotificationCatalog catalog, Path file) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                Writer out = new Writer(channel);
+                out.putInt(MAGIC);
+                out.putInt(FORMAT_VERSION);
+
+                out.text(TextTable.of(catalog.getEventCodes()));
+                out.text(TextTable.of(catalog.getPickupTypes()));
+                List<String> tooltipCodes = new ArrayList<>(catalog.getEventCodeTooltips().keySet());
+                out.text(TextTable.of(tooltipCodes));
+                out.text(TextTable.of(new ArrayList<>(catalog.getEventCodeTooltips().values())));
+                out.text(TextTable.of(catalog.getEventTypes()));
+                out.text(TextTable.of(new ArrayList<>(catalog.getEventCodeTypes().keySet())));
+                out.text(TextTable.of(new ArrayList<>(catalog.getEventCodeTypes().values())));
+                out.text(TextTable.of(catalog.getStores()));
+
+                EventConfigTable configs = catalog.getEventConfigs();
+                out.ints(configs.ids());
+                out.ints(configs.stores());
+                out.ints(configs.eventCodes());
+                out.ints(configs.pickupTypes());
+                out.ints(configs.notifications());
+                out.ints(configs.reasons());
+                out.text(configs.reasonTexts());
+
+                NotificationCatalog.Notifications n = catalog.notifications();
+                out.text(n.labels);
+                out.text(n.json);
+                out.ints(n.byLabel.duplicate());
+
+                out.text(n.index.keys());
+                out.longs(n.index.grams());
+                out.ints(n.index.starts());
+                out.ints(n.index.postings());
+
+                out.text(n.terms.terms());
+                out.ints(n.terms.starts());
+                out.ints(n.terms.postings());
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** Maps {@code file} read-only; the catalog is usable as soon as this returns. */
+    public static NotificationCatalog open(Path file) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + ": index files over 2 GB are not supported");
+            }
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        map.order(ORDER);
+        Reader in = new Reader(map, file);
+        if (in.getInt() != MAGIC) throw new IOException(file + ": not a catalog index file");
+        int format = in.getInt();
+        if (format != FORMAT_VERSION) {
+            throw new IOException(file + ": index format " + format + ", expected " + FORMAT_VERSION + "; rebuild it");
+        }
+
+        List<String> eventCodes = new ArrayList<>(in.text().asList());
+        List<String> pickupTypes = new ArrayList<>(in.text().asList());
+        List<String> tooltipCodes = in.text().asList();
+        List<String> tooltipTexts = in.text().asList();
+        Map<String, String> tooltips = new LinkedHashMap<>();
+        for (int i = 0; i < tooltipCodes.size(); i++) tooltips.put(tooltipCodes.get(i), tooltipTexts.get(i));
+        List<String> eventTypes = new ArrayList<>(in.text().asList());
+        List<String> typedCodes = in.text().asList();
+        List<String> codeTypes = in.text().asList();
+        Map<String, String> eventCodeTypes = new LinkedHashMap<>();
+        for (int i = 0; i < typedCodes.size(); i++) eventCodeTypes.put(typedCodes.get(i), codeTypes.get(i));
+        List<String> stores = new ArrayList<>(in.text().asList());
+        EventConfigTable configs = new EventConfigTable(in.ints(), in.ints(), in.ints(), in.ints(), in.ints(),
+                in.ints(), in.text());
+
+        TextTable labels = in.text();
+        TextTable json = in.text();
+        IntBuffer byLabel = in.ints();
+
+        TrigramIndex index = new TrigramIndex(in.text(), in.longs(), in.ints(), in.ints());
+        FuzzyIndex terms = new FuzzyIndex(labels.size(), in.text(), in.ints(), in.ints());
+
+        return new NotificationCatalog(eventCodes, pickupTypes, tooltips, eventTypes, eventCodeTypes,
+                new NotificationCatalog.Notifications(labels, json, byLabel, index, terms), stores, configs);
+    }
+
+    /* Sequential writer through one direct buffer, tracking the file position for alignment */
+    private static final class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ORDER);
+        private long position;
+
+        Writer(FileChannel channel) { this.channel = channel; }
+
+        void putInt(int v) throws IOException { room(4); buf.putInt(v); position += 4; }
+        void putLong(long v) throws IOException { room(8); buf.putLong(v); position += 8; }
+        void putChar(char v) throws IOException { room(2); buf.putChar(v); position += 2; }
+
+        void text(TextTable table) throws IOException {
+            ints(table.offsets());
+            CharBuffer chars = table.chars();
+            putInt(chars.remaining());
+            align();
+            while (chars.hasRemaining()) putChar(chars.get());
+        }
+
+        void ints(IntBuffer values) throws IOException {
+            putInt(values.remaining());
+            align();
+            while (values.hasRemaining()) putInt(values.get());
+        }
+
+        void longs(LongBuffer values) throws IOException {
+            putInt(values.remaining());
+            align();
+            while (values.hasRemaining()) putLong(values.get());
+        }
+
+        private void align() throws IOException {
+            while ((position & 7) != 0) {
+                room(1);
+                buf.put((byte) 0);
+                position++;
+            }
+        }
+
+        private void room(int bytes) throws IOException {
+            if (buf.remaining() < bytes) flush();
+        }
+
+        void flush() throws IOException {
+            ((Buffer) buf).flip();
+            while (buf.hasRemaining()) channel.write(buf);
+            ((Buffer) buf).clear();
+        }
+    }
+
+    /* Cursor over the mapped file handing out typed views of each array */
+    private static final class Reader {
+        private final ByteBuffer map;
+        private final Path file;
+        private int position;
+
+        Reader(ByteBuffer map, Path file) {
+            this.map = map;
+            this.file = file;
+        }
+
+        int getInt() throws IOException {
+            need(4);
+            int v = map.getInt(position);
+            position += 4;
+            return v;
+        }
+
+        TextTable text() throws IOException {
+            IntBuffer offsets = ints();
+            int count = getInt();
+            return new TextTable(offsets, block(count, 2).asCharBuffer());
+        }
+
+        IntBuffer ints() throws IOException {
+            int count = getInt();
+            return block(count, 4).asIntBuffer();
+        }
+
+        LongBuffer longs() throws IOException {
+            int count = getInt();
+            return block(count, 8).asLongBuffer();
+        }
+
+        private ByteBuffer block(int count, int width) throws IOException {
+            position = (position + 7) & ~7;
+            long bytes = (long) count * width;
+            if (count < 0) throw new IOException(file + ": corrupt index file");
+            need(bytes);
+            ByteBuffer view = map.duplicate();
+            ((Buffer) view).position(position);
+            ((Buffer) view).limit(position + (int) bytes);
+            position += (int) bytes;
+            return view.slice().order(ORDER);
+        }
+
+        private void need(long bytes) throws IOException {
+            if (position + bytes > map.limit()) throw new IOException(file + ": truncated index file");
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.search;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Loads the catalog when the web application starts and keeps it in sync
+ * with its data file until shutdown.
+ *
+ * The file is the {@code com.search.CATALOG_FILE} context parameter (an
+ * absolute path on the server's disk), or {@code WEB-INF/catalog.properties}
+ * of the exploded application if it is not set. A {@code .idx} file built
+ * by {@link CatalogIndexFile} is mapped instead of parsed.
+ */
+public class CatalogListener implements ServletContextListener {
+
+    public static final String CATALOG_FILE_PARAM = "com.search.CATALOG_FILE";
+    private static final String DEFAULT_CATALOG_FILE = "/WEB-INF/catalog.properties";
+
+    private CatalogWatcher watcher;
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ServletContext context = event.getServletContext();
+        String configured = context.getInitParameter(CATALOG_FILE_PARAM);
+        String location = configured != null && !configured.trim().isEmpty()
+                ? configured.trim() : context.getRealPath(DEFAULT_CATALOG_FILE);
+        if (location == null) {
+            context.log("Catalog file not found: set " + CATALOG_FILE_PARAM + " when the application is not exploded");
+            return;
+        }
+
+        Path file = Paths.get(location);
+        try {
+            watcher = new CatalogWatcher(file, CatalogService.getInstance());
+            watcher.start();
+        } catch (IOException | RuntimeException e) {
+            context.log("Catalog " + file + " could not be loaded; the page stays empty until it can", e);
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        if (watcher == null) return;
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            event.getServletContext().log("Catalog watcher did not close cleanly", e);
+        }
+    }
+}
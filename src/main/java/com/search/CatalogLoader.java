@@ -0,0 +1,179 @@
+package com.search;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Reads a {@link NotificationCatalog} from a UTF-8 properties file:
+ * <pre>
+ *   eventType.1=Account Management
+ *   eventCode.1=EVT001 - Registration
+ *   eventCode.1.tooltip=Employee Created
+ *   eventCode.1.type=1
+ *   pickupType.1=Home Delivery
+ *   notification.1=Prescription ready for pickup
+ *   store.1=Store #001 - Downtown
+ *   config.1=1 1 1 1
+ *   config.1.disabled=Store closed for renovation
+ * </pre>
+ * Entries of each section are ordered by their number (gaps are allowed).
+ * An event code's type refers to an {@code eventType} by number. A
+ * {@code config} entry is a configured combination: store, event code,
+ * pickup type and notification numbers, in that order; it is enabled
+ * unless it has a {@code disabled} reason.
+ * Unknown keys are rejected so that a typo does not silently drop entries.
+ * Large catalogs can be prebuilt into a {@link CatalogIndexFile} instead.
+ */
+public final class CatalogLoader {
+
+    private CatalogLoader() { }
+
+    /**
+     * Parses {@code file} and builds the catalog with all its indexes, or
+     * maps it if it is a prebuilt {@code .idx} {@link CatalogIndexFile}.
+     */
+    public static NotificationCatalog load(Path file) throws IOException {
+        if (file.getFileName().toString().endsWith(".idx")) return CatalogIndexFile.open(file);
+        try (InputStream in = Files.newInputStream(file)) {
+            return load(new InputStreamReader(in, StandardCharsets.UTF_8), file.toString());
+        }
+    }
+
+    static NotificationCatalog load(Reader reader, String source) throws IOException {
+        Properties props = new Properties();
+        props.load(reader);
+
+        TreeMap<Integer, String> eventTypes = new TreeMap<>();
+        TreeMap<Integer, String> eventCodes = new TreeMap<>();
+        TreeMap<Integer, String> tooltips = new TreeMap<>();
+        TreeMap<Integer, String> codeTypes = new TreeMap<>();
+        TreeMap<Integer, String> pickupTypes = new TreeMap<>();
+        TreeMap<Integer, String> notifications = new TreeMap<>();
+        TreeMap<Integer, String> stores = new TreeMap<>();
+        TreeMap<Integer, String> configs = new TreeMap<>();
+        TreeMap<Integer, String> disabled = new TreeMap<>();
+
+        for (String key : props.stringPropertyNames()) {
+            String value = props.getProperty(key);
+            if (key.startsWith("eventCode.") && key.endsWith(".tooltip")) {
+                tooltips.put(number(key, "eventCode.".length(), key.length() - ".tooltip".length(), source), value);
+            } else if (key.startsWith("eventCode.") && key.endsWith(".type")) {
+                codeTypes.put(number(key, "eventCode.".length(), key.length() - ".type".length(), source), value);
+            } else if (key.startsWith("eventType.")) {
+                eventTypes.put(number(key, "eventType.".length(), key.length(), source), value);
+            } else if (key.startsWith("eventCode.")) {
+                eventCodes.put(number(key, "eventCode.".length(), key.length(), source), value);
+            } else if (key.startsWith("pickupType.")) {
+                pickupTypes.put(number(key, "pickupType.".length(), key.length(), source), value);
+            } else if (key.startsWith("notification.")) {
+                notifications.put(number(key, "notification.".length(), key.length(), source), value);
+            } else if (key.startsWith("store.")) {
+                stores.put(number(key, "store.".length(), key.length(), source), value);
+            } else if (key.startsWith("config.") && key.endsWith(".disabled")) {
+                disabled.put(number(key, "config.".length(), key.length() - ".disabled".length(), source), value);
+            } else if (key.startsWith("config.")) {
+                configs.put(number(key, "config.".length(), key.length(), source), value);
+            } else {
+                throw new IOException(source + ": unknown key '" + key + "'");
+            }
+        }
+
+        Map<String, String> eventCodeTooltips = new LinkedHashMap<>();
+        for (Map.Entry<Integer, String> e : tooltips.entrySet()) {
+            String code = eventCodes.get(e.getKey());
+            if (code == null) {
+                throw new IOException(source + ": tooltip for missing eventCode." + e.getKey());
+            }
+            eventCodeTooltips.put(code, e.getValue());
+        }
+
+        Map<String, String> eventCodeTypes = new LinkedHashMap<>();
+        for (Map.Entry<Integer, String> e : codeTypes.entrySet()) {
+            String code = eventCodes.get(e.getKey());
+            if (code == null) {
+                throw new IOException(source + ": type for missing eventCode." + e.getKey());
+            }
+            String ref = e.getValue().trim();
+            String type = eventTypes.get(number(ref, 0, ref.length(), source));
+            if (type == null) {
+                throw new IOException(source + ": eventCode." + e.getKey() + ".type refers to missing eventType." + ref);
+            }
+            eventCodeTypes.put(code, type);
+        }
+
+        for (Integer n : disabled.keySet()) {
+            if (!configs.containsKey(n)) throw new IOException(source + ": disabled reason for missing config." + n);
+        }
+        EventConfigTable eventConfigs = eventConfigs(configs, disabled,
+                Arrays.asList(stores, eventCodes, pickupTypes, notifications), source);
+
+        return new NotificationCatalog(new ArrayList<>(eventCodes.values()), new ArrayList<>(pickupTypes.values()),
+                eventCodeTooltips, new ArrayList<>(eventTypes.values()), eventCodeTypes,
+                NotificationCatalog.Notifications.build(new ArrayList<>(notifications.values())),
+                new ArrayList<>(stores.values()), eventConfigs);
+    }
+
+    /* Config entries as columns of ordinals into the referenced sections (store, event code, pickup, notification) */
+    private static EventConfigTable eventConfigs(TreeMap<Integer, String> configs, TreeMap<Integer, String> disabled,
+                                                 List<TreeMap<Integer, String>> sections, String source)
+            throws IOException {
+        String[] names = { "store", "eventCode", "pickupType", "notification" };
+        List<Map<Integer, Integer>> ordinals = new ArrayList<>(sections.size());
+        for (TreeMap<Integer, String> section : sections) {
+            Map<Integer, Integer> ords = new HashMap<>(section.size() * 4 / 3 + 1);
+            for (Integer n : section.keySet()) ords.put(n, ords.size());
+            ordinals.add(ords);
+        }
+
+        int rows = configs.size();
+        int[] ids = new int[rows];
+        int[][] columns = new int[names.length][rows];
+        int[] reasons = new int[rows];
+        List<String> reasonTexts = new ArrayList<>();
+        Map<String, Integer> reasonIndex = new HashMap<>();
+        int row = 0;
+        for (Map.Entry<Integer, String> e : configs.entrySet()) {
+            String[] refs = e.getValue().trim().split("\\s+");
+            if (refs.length != names.length) {
+                throw new IOException(source + ": config." + e.getKey()
+                        + " needs store, eventCode, pickupType and notification numbers");
+            }
+            for (int c = 0; c < names.length; c++) {
+                Integer ord = ordinals.get(c).get(number(refs[c], 0, refs[c].length(), source));
+                if (ord == null) {
+                    throw new IOException(source + ": config." + e.getKey() + " refers to missing "
+                            + names[c] + "." + refs[c]);
+                }
+                columns[c][row] = ord;
+            }
+            String reason = disabled.get(e.getKey());
+            if (reason == null) {
+                reasons[row] = -1;
+            } else {
+                Integer index = reasonIndex.get(reason);
+                if (index == null) {
+                    index = reasonTexts.size();
+                    reasonIndex.put(reason, index);
+                    reasonTexts.add(reason);
+                }
+                reasons[row] = index;
+            }
+            ids[row++] = e.getKey();
+        }
+        return EventConfigTable.of(ids, columns[0], columns[1], columns[2], columns[3], reasons, reasonTexts);
+    }
+
+    private static int number(String key, int from, int to, String source) throws IOException {
+        try {
+            return Integer.parseInt(key.substring(from, Math.max(from, to)));
+        } catch (NumberFormatException e) {
+            throw new IOException(source + ": bad entry number in '" + key + "'");
+        }
+    }
+}
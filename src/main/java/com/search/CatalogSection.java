@@ -0,0 +1,13 @@
+package com.search;
+
+/**
+ * The selectable lists of a {@link NotificationCatalog}. Selection state
+ * refers to a section by this key rather than holding the catalog itself,
+ * so it stays small when the session is serialized.
+ */
+public enum CatalogSection {
+    EVENT_CODES,
+    PICKUP_TYPES,
+    NOTIFICATIONS,
+    STORES
+}
@@ -0,0 +1,109 @@
+package com.search;
+
+import java.util.Collections;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Application-scoped holder of the shared {@link NotificationCatalog}.
+ *
+ * The catalog is loaded from a data file by {@link CatalogListener} and
+ * referenced by every session bean, instead of each session building its
+ * own copy in {@code @PostConstruct}. Suggestion responses are cached here
+ * too, since they depend only on the catalog and the query.
+ *
+ * A reload publishes a new, fully indexed catalog with a single atomic
+ * swap. Readers take one snapshot per request and never lock; requests
+ * already running finish on the snapshot they started with.
+ */
+public final class CatalogService {
+
+    private static final CatalogService INSTANCE = new CatalogService();
+
+    /* Suggestion cache bounds: entries and total cached JSON chars (~2 bytes each) */
+    private static final int CACHE_MAX_ENTRIES = 4096;
+    private static final long CACHE_MAX_CHARS = 8L * 1024 * 1024;
+
+    /* Replaced catalogs kept to interpret ordinals posted by pages rendered from them */
+    private static final int HISTORY = 3;
+
+    /* Cache misses only: the search and ranking behind a suggestion page */
+    private static final Histogram SEARCH_LATENCY = Metrics.latency("suggestions.search");
+    private static final Histogram RESPONSE_CHARS = Metrics.size("suggestions.response", "chars");
+
+    private final AtomicReference<NotificationCatalog> catalog = new AtomicReference<>(
+            new NotificationCatalog(Collections.<String>emptyList(), Collections.<String>emptyList(),
+                    Collections.<String>emptyList(), Collections.<String, String>emptyMap()));
+    private final ConcurrentSkipListMap<Long, NotificationCatalog> history = new ConcurrentSkipListMap<>();
+    private final SuggestionCache suggestionCache = new SuggestionCache(CACHE_MAX_ENTRIES, CACHE_MAX_CHARS);
+
+    private CatalogService() { }
+
+    public static CatalogService getInstance() { return INSTANCE; }
+
+    public NotificationCatalog getCatalog() { return catalog.get(); }
+
+    /** The current catalog or a recently replaced one with that version, else null. */
+    public NotificationCatalog getCatalog(long version) {
+        NotificationCatalog current = catalog.get();
+        return current.getVersion() == version ? current : history.get(version);
+    }
+
+    /**
+     * Makes {@code next} the current catalog. It must be fully built; the
+     * previous one stays readable by requests that already hold it.
+     */
+    public void publish(NotificationCatalog next) {
+        NotificationCatalog previous = catalog.getAndSet(next);
+        history.put(previous.getVersion(), previous);
+        while (history.size() > HISTORY) history.pollFirstEntry();
+        // cache keys carry the version, so this only frees the old pages early
+        suggestionCache.clear();
+    }
+
+    /* Swaps in another catalog; used by the benchmarks in src/bench */
+    void setCatalog(NotificationCatalog catalog) { this.catalog.set(catalog); }
+
+    public SuggestionCache getSuggestionCache() { return suggestionCache; }
+
+    /** Trims raw chip-editor input and normalizes it like the search keys ({@link SearchKeys}); null becomes "". */
+    public static String normalizeQuery(String raw) {
+        return raw == null ? "" : SearchKeys.normalize(raw.trim());
+    }
+
+    /** First page of suggestions for an already normalized query. */
+    public String suggestionsJson(String query) {
+        return suggestionsJson(query, 0, NotificationCatalog.DEFAULT_SUGGESTION_LIMIT);
+    }
+
+    /**
+     * One ranked page of suggestions for an already normalized query (see
+     * {@link #normalizeQuery}); hot pages are answered from the cache with a
+     * single lookup. Offset and limit are clamped to sane bounds.
+     */
+    public String suggestionsJson(String query, int offset, int limit) {
+        return suggestionsJson(query, offset, limit, null, false);
+    }
+
+    /**
+     * As {@link #suggestionsJson(String, int, int)}, narrowing cache misses
+     * through the caller's per-session {@link SearchContext} (may be null),
+     * and optionally adding typo-tolerant matches.
+     */
+    public String suggestionsJson(String query, int offset, int limit, SearchContext context, boolean fuzzy) {
+        offset = Math.max(0, offset);
+        limit = Math.max(1, Math.min(limit, NotificationCatalog.MAX_SUGGESTION_LIMIT));
+
+        NotificationCatalog current = catalog.get();
+        String key = SuggestionCache.key(current.getVersion(), query, offset, limit, fuzzy);
+        String json = suggestionCache.get(key);
+        if (json == null) {
+            long start = System.nanoTime();
+            json = current.suggestionsJson(query, offset, limit, context, fuzzy);
+            SEARCH_LATENCY.recordSince(start);
+            suggestionCache.put(key, json);
+        }
+        RESPONSE_CHARS.record(json.length());
+        return json;
+    }
+}
@@ -0,0 +1,125 @@
+package com.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the catalog data file and publishes a new catalog whenever it
+ * changes.
+ *
+ * Editors usually save in several steps (truncate, write, rename), so events
+ * are debounced and the file is read once it has been quiet for a moment.
+ * Parsing and index building run on a background thread; requests keep
+ * using the current catalog until {@link CatalogService#publish} swaps the
+ * finished one in. A file that fails to parse is logged and ignored.
+ */
+public final class CatalogWatcher implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(CatalogWatcher.class.getName());
+
+    private static final long DEBOUNCE_MS = 300;
+
+    private final Path file;
+    private final CatalogService service;
+    private final WatchService watchService;
+    private final ScheduledExecutorService reloader;
+    private final Thread watcher;
+
+    /* Touched only by the watcher thread */
+    private ScheduledFuture<?> pending;
+
+    /* Touched only by the reload thread */
+    private FileTime lastModified;
+    private long lastSize = -1;
+
+    public CatalogWatcher(Path file, CatalogService service) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.service = service;
+        this.watchService = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        this.reloader = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "catalog-reload"));
+        this.watcher = daemon(this::watch, "catalog-watcher");
+    }
+
+    /**
+     * Starts watching the file and waits for it to be loaded once. If that
+     * first load fails, a later fix to the file is still picked up.
+     */
+    public void start() throws IOException {
+        watcher.start();
+        try {
+            reloader.submit(() -> {
+                reload(true);
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading " + file, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("Could not load " + file, cause);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watcher.interrupt();
+        reloader.shutdownNow();
+        watchService.close();
+    }
+
+    private void watch() {
+        Path name = file.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context());
+                }
+                key.reset();
+                if (changed) {
+                    if (pending != null) pending.cancel(false);
+                    pending = reloader.schedule(this::reloadQuietly, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException | RejectedExecutionException e) {
+            // closed
+        }
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload(false);
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Catalog " + file + " not reloaded; keeping the current one", e);
+        }
+    }
+
+    private void reload(boolean force) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!force && attrs.lastModifiedTime().equals(lastModified) && attrs.size() == lastSize) return;
+
+        NotificationCatalog next = CatalogLoader.load(file);
+        lastModified = attrs.lastModifiedTime();
+        lastSize = attrs.size();
+        service.publish(next);
+        LOG.info("Catalog " + file + " loaded: " + next.getEventCodes().size() + " event codes, "
+                + next.getPickupTypes().size() + " pickup types, "
+                + next.getNotificationMessages().size() + " notification messages");
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
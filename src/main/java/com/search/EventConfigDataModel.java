@@ -0,0 +1,467 @@
+package com.search;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.faces.context.FacesContext;
+
+import org.ajax4jsf.model.DataVisitor;
+import org.ajax4jsf.model.ExtendedDataModel;
+import org.ajax4jsf.model.Range;
+import org.ajax4jsf.model.SequenceRange;
+import org.richfaces.model.FilterField;
+import org.richfaces.model.Modifiable;
+import org.richfaces.model.Ordering;
+import org.richfaces.model.SortField2;
+
+/**
+ * Lazy, paged model of the event configuration table for
+ * {@code rich:dataTable}. The table walks one page (its {@link Range}) and
+ * only those rows are looked up and built, straight from the shared
+ * {@link EventConfigTable}; the session holds a few ints, not the rows.
+ *
+ * Rows are filtered by the session's store, event code, pickup type and
+ * notification selections (a section with nothing selected is not
+ * filtered): a bitmap AND/OR over the table's {@link EventConfigIndex}.
+ * The matching rows, and so the row count, are kept until the catalog or
+ * a selection changes.
+ *
+ * Sorting by a column (the table hands its sort fields over, see
+ * {@link Modifiable}) uses the catalog's shared permutation for that column
+ * ({@link EventConfigSort}): unfiltered, a page is a slice of it; filtered,
+ * the matching rows are kept in that order once, and pages are slices of
+ * those.
+ *
+ * Rows are keyed by configuration number and pages are found by key
+ * (keyset pagination): the model remembers the first and last key of the
+ * page it last showed, so showing it again, or the page after or before
+ * it, continues from those keys. A catalog reload that adds or removes
+ * rows further up then does not shift the rows under the user. Other jumps
+ * go by position.
+ *
+ * {@link ExportServlet} streams all pages at once, in the same order,
+ * through a {@link Cursor}.
+ *
+ * Overlapping requests of the session may use the model at once (the page
+ * has no {@code a4j:queue}). What is derived from the catalog, selections
+ * and sort (its view), the sort and the last page are each one
+ * immutable object in a volatile field, replaced whole, so a request never
+ * pairs one filter's rows with another's order; when two race, the later
+ * write wins.
+ */
+public class EventConfigDataModel extends ExtendedDataModel implements Modifiable, Serializable {
+
+    private static final long serialVersionUID = 4L;
+
+    /* Filter evaluation and sorting, when the catalog, a selection or the sort changed (see Metrics) */
+    private static final Histogram FILTER_LATENCY = Metrics.latency("eventConfigs.filter");
+    private static final Histogram SORT_LATENCY = Metrics.latency("eventConfigs.sort");
+
+    /* Selections filtering the rows (the session's own) */
+    private final SelectionSet[] selections;
+
+    /* Requested sort */
+    private volatile Sort sort = Sort.NONE;
+
+    /* Current row (configuration number), or null */
+    private volatile Integer rowKey;
+
+    /* Last page walked, or null */
+    private volatile Page page;
+
+    /* Source of order stamps: a new one whenever the rows are filtered or sorted differently (not by a reload alone) */
+    private final AtomicInteger orderStamps = new AtomicInteger();
+
+    /* Rows and order for the current catalog, selections and sort */
+    private transient volatile View view;
+
+    /* Current row's labels, built once per row and catalog */
+    private transient volatile CurrentRow rowData;
+
+    public EventConfigDataModel(SelectionSet... selections) {
+        this.selections = selections.clone();
+    }
+
+    /* ===== Sorting ===== */
+
+    /**
+     * Takes the first sort field on a sortable column (by the row property
+     * its expression shows, e.g. {@code #{row.store}}); none sorts by
+     * configuration number. Filter fields are not supported: rows are
+     * filtered by the selections.
+     */
+    @Override
+    public void modify(List<FilterField> filterFields, List<SortField2> sortFields) {
+        EventConfigSort.Column column = null;
+        boolean desc = false;
+        if (sortFields != null) {
+            for (SortField2 field : sortFields) {
+                if (field.getOrdering() == null || field.getOrdering() == Ordering.UNSORTED) continue;
+                column = EventConfigSort.Column.of(property(field.getExpression().getExpressionString()));
+                if (column != null) {
+                    desc = field.getOrdering() == Ordering.DESCENDING;
+                    break;
+                }
+            }
+        }
+        setSort(column, desc);
+    }
+
+    /** Sorts by {@code column} (null: configuration number order). */
+    void setSort(EventConfigSort.Column column, boolean descending) {
+        Sort next = new Sort(column, descending);
+        if (!next.equals(sort)) sort = next;
+    }
+
+    /* "#{row.store}" -> "store" */
+    private static String property(String expression) {
+        String s = expression.endsWith("}") ? expression.substring(0, expression.length() - 1) : expression;
+        return s.substring(s.lastIndexOf('.') + 1).trim();
+    }
+
+    /* ===== Paging ===== */
+
+    @Override
+    public void walk(FacesContext context, DataVisitor visitor, Range range, Object argument) throws IOException {
+        View v = view();
+        EventConfigTable table = v.catalog.getEventConfigs();
+        int count = v.rows.cardinality();
+        int first = 0, size = count;
+        if (range instanceof SequenceRange) {
+            first = Math.max(0, ((SequenceRange) range).getFirstRow());
+            if (((SequenceRange) range).getRows() > 0) size = ((SequenceRange) range).getRows();
+        }
+        if (count == 0) return;
+
+        int start = -1;
+        Page last = page;
+        if (first > 0 && last != null && size == last.rows && last.stamp == v.stamp) {
+            if (first == last.first) {
+                start = position(v, last.startKey, false);
+            } else if (first == last.first + size) {
+                start = position(v, last.endKey, true);
+            } else if (first == last.first - size) {
+                start = position(v, last.startKey, false);
+                if (start >= 0) start = Math.max(0, start - size);
+            }
+        }
+        // by position; past the end (rows were removed): the last rows there are
+        if (start < 0 || start >= count) start = first < count ? first : Math.max(0, count - size);
+
+        int end = (int) Math.min((long) start + size, count);
+        for (int p = start; p < end; p++) {
+            visitor.process(context, table.id(v.rowAt(p)), argument);
+        }
+        page = new Page(first, size, table.id(v.rowAt(start)), table.id(v.rowAt(end - 1)), v.stamp);
+    }
+
+    /*
+     * Position in the view's order of the row with configuration number key
+     * (of the first row ordered after it if it is not there), one further if
+     * after and it is there; -1 if that cannot be told.
+     */
+    private static int position(View v, int key, boolean after) {
+        EventConfigTable table = v.catalog.getEventConfigs();
+        int[] order = v.order;
+        if (order == null) {
+            int row = table.rowOf(after ? key + 1 : key);
+            return v.rows.rank(row >= 0 ? row : -row - 1);
+        }
+        int row = table.rowOf(key);
+        if (row < 0) return -1; // its sort key is gone with it
+        EventConfigSort sort = v.catalog.eventConfigSort();
+        long k = sort.key(v.column, row);
+        boolean present = v.rows.contains(row);
+        // first index with a key above k (ascending), or at or above k
+        int lo = 0, hi = order.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            long m = sort.key(v.column, order[mid]);
+            if (m < k || v.descending && m == k) lo = mid + 1;
+            else hi = mid;
+        }
+        int p = v.descending ? order.length - lo : lo;
+        return after && present ? p + 1 : p;
+    }
+
+    /* ===== Filtering ===== */
+
+    /*
+     * The view for the current catalog, selections and sort. The previous one
+     * is kept while they are unchanged (the selections' change counters
+     * tell, so an unchanged filter costs no copy of the bits); otherwise its
+     * rows or order are reused where they still apply.
+     */
+    private View view() {
+        while (true) {
+            NotificationCatalog catalog = catalog();
+            Sort sort = this.sort;
+            long[] changes = new long[selections.length];
+            for (int i = 0; i < changes.length; i++) changes[i] = selections[i].changes();
+            View previous = view;
+            boolean sameCatalog = previous != null && previous.catalog.getVersion() == catalog.getVersion();
+            boolean unchanged = sameCatalog && Arrays.equals(changes, previous.changes);
+            if (unchanged && previous.sort.equals(sort)) return previous;
+
+            BitSet[] filter;
+            boolean sameFilter;
+            if (unchanged) {
+                filter = previous.filter;
+                sameFilter = true;
+            } else {
+                filter = new BitSet[selections.length];
+                for (int i = 0; i < filter.length; i++) filter[i] = selections[i].toBitSet();
+                sameFilter = previous != null && Arrays.equals(filter, previous.filter);
+            }
+
+            RowBitmap rows;
+            if (sameCatalog && sameFilter) {
+                rows = previous.rows;
+            } else {
+                long start = System.nanoTime();
+                rows = catalog.getEventConfigs().index().filter(bySection(filter));
+                FILTER_LATENCY.recordSince(start);
+            }
+
+            int[] order = null;
+            if (sort.column != null) {
+                if (previous != null && rows == previous.rows && sort.column == previous.sort.column) {
+                    order = previous.order;
+                } else {
+                    long start = System.nanoTime();
+                    order = catalog.eventConfigSort().sort(sort.column, rows);
+                    SORT_LATENCY.recordSince(start);
+                }
+            }
+
+            // the selections' ordinals are of the catalog seen here unless a reload came in between
+            if (catalog() != catalog) continue;
+            // same selections over reloaded rows keep the keyset position; new selections or sort start over
+            boolean sameOrder = previous == null || sameFilter && sort.equals(previous.sort);
+            int stamp = sameOrder ? orderStamps.get() : orderStamps.incrementAndGet();
+            View next = new View(catalog, changes, filter, rows, sort, order, stamp);
+            view = next;
+            return next;
+        }
+    }
+
+    private Map<CatalogSection, BitSet> bySection(BitSet[] filter) {
+        Map<CatalogSection, BitSet> bySection = new EnumMap<>(CatalogSection.class);
+        for (int i = 0; i < filter.length; i++) bySection.put(selections[i].getSection(), filter[i]);
+        return bySection;
+    }
+
+    /* ===== Export ===== */
+
+    /** The selections filtering the rows: stores, event codes, pickup types, notifications. */
+    List<SelectionSet> selections() { return Collections.unmodifiableList(Arrays.asList(selections)); }
+
+    /**
+     * All the rows the table shows, every page, in its current order, for
+     * an export; nothing is copied.
+     */
+    Cursor cursor() {
+        View v = view();
+        return new Cursor(v.catalog, v.rows, v.order, v.descending);
+    }
+
+    /** Every row of {@code catalog}, in configuration number order. */
+    static Cursor cursor(NotificationCatalog catalog) {
+        return new Cursor(catalog, RowBitmap.range(catalog.getEventConfigs().size()), null, false);
+    }
+
+    /** Forward-only walk over table rows of one catalog. */
+    static final class Cursor {
+        private final NotificationCatalog catalog;
+        private final RowBitmap rows;
+        private final int[] order;
+        private final boolean descending;
+        private final int count;
+        private int position;
+        private int row = -1;
+
+        private Cursor(NotificationCatalog catalog, RowBitmap rows, int[] order, boolean descending) {
+            this.catalog = catalog;
+            this.rows = rows;
+            this.order = order;
+            this.descending = descending;
+            this.count = rows.cardinality();
+        }
+
+        /** The catalog the rows are of. */
+        NotificationCatalog catalog() { return catalog; }
+
+        int count() { return count; }
+
+        /** The next table row, or -1 past the last. */
+        int next() {
+            if (position >= count) return -1;
+            int p = position++;
+            if (order != null) return order[descending ? count - 1 - p : p];
+            return row = rows.next(row + 1);
+        }
+    }
+
+    /* ===== DataModel ===== */
+
+    @Override
+    public int getRowCount() { return view().rows.cardinality(); }
+
+    @Override
+    public void setRowKey(Object key) { rowKey = (Integer) key; }
+
+    @Override
+    public Object getRowKey() { return rowKey; }
+
+    @Override
+    public boolean isRowAvailable() {
+        Integer key = rowKey;
+        if (key == null) return false;
+        View v = view();
+        int row = v.catalog.getEventConfigs().rowOf(key);
+        return row >= 0 && v.rows.contains(row);
+    }
+
+    @Override
+    public Object getRowData() {
+        Integer key = rowKey;
+        if (key == null) return null;
+        NotificationCatalog catalog = catalog();
+        CurrentRow current = rowData;
+        if (current == null || current.row.getId() != key || current.catalog != catalog) {
+            int row = catalog.getEventConfigs().rowOf(key);
+            if (row < 0) return null;
+            rowData = current = new CurrentRow(catalog, catalog.eventConfigRow(row));
+        }
+        return current.row;
+    }
+
+    /* Plain DataModel access (h:dataTable) goes by position in the current order */
+    @Override
+    public int getRowIndex() {
+        Integer key = rowKey;
+        if (key == null) return -1;
+        View v = view();
+        int row = v.catalog.getEventConfigs().rowOf(key);
+        return row >= 0 && v.rows.contains(row) ? position(v, key, false) : -1;
+    }
+
+    @Override
+    public void setRowIndex(int index) {
+        View v = view();
+        rowKey = index >= 0 && index < v.rows.cardinality()
+                ? v.catalog.getEventConfigs().id(v.rowAt(index)) : null;
+    }
+
+    @Override
+    public Object getWrappedData() { return catalog().getEventConfigs(); }
+
+    /**
+     * Ignored: the rows always come from the shared catalog. Components may
+     * hand the model its own data back (e.g. when the value binding is
+     * evaluated again or their state is restored); nothing else is taken.
+     */
+    @Override
+    public void setWrappedData(Object data) { }
+
+    /* Shared, application-wide catalog; never serialized with the session */
+    private static NotificationCatalog catalog() {
+        return CatalogService.getInstance().getCatalog();
+    }
+
+    /* Sorted column (null for configuration number order) and direction */
+    private static final class Sort implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        static final Sort NONE = new Sort(null, false);
+
+        final EventConfigSort.Column column;
+        final boolean descending;
+
+        Sort(EventConfigSort.Column column, boolean descending) {
+            this.column = column;
+            this.descending = column != null && descending;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Sort && ((Sort) o).column == column && ((Sort) o).descending == descending;
+        }
+
+        @Override
+        public int hashCode() { return (column == null ? 0 : column.hashCode()) * 2 + (descending ? 1 : 0); }
+    }
+
+    /* A page walked: range start and size, keys of its first and last row, stamp of the order it was cut from */
+    private static final class Page implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final int first;
+        final int rows;
+        final int startKey;
+        final int endKey;
+        final int stamp;
+
+        Page(int first, int rows, int startKey, int endKey, int stamp) {
+            this.first = first;
+            this.rows = rows;
+            this.startKey = startKey;
+            this.endKey = endKey;
+            this.stamp = stamp;
+        }
+    }
+
+    /*
+     * Rows matching the selections (filter, at change counts changes) in
+     * catalog, by table row, and when sorted the same rows ascending by the
+     * sort column.
+     */
+    private static final class View {
+        final NotificationCatalog catalog;
+        final long[] changes;
+        final BitSet[] filter;
+        final RowBitmap rows;
+        final Sort sort;
+        final EventConfigSort.Column column;
+        final boolean descending;
+        final int[] order;
+        final int stamp;
+
+        View(NotificationCatalog catalog, long[] changes, BitSet[] filter, RowBitmap rows, Sort sort,
+             int[] order, int stamp) {
+            this.catalog = catalog;
+            this.changes = changes;
+            this.filter = filter;
+            this.rows = rows;
+            this.sort = sort;
+            this.column = sort.column;
+            this.descending = sort.descending;
+            this.order = order;
+            this.stamp = stamp;
+        }
+
+        /* Table row at position p (below the row count), in the sorted order if any */
+        int rowAt(int p) {
+            if (order == null) return rows.select(p);
+            return order[descending ? order.length - 1 - p : p];
+        }
+    }
+
+    /* Labels of the current row and the catalog they are of */
+    private static final class CurrentRow {
+        final NotificationCatalog catalog;
+        final EventConfigRow row;
+
+        CurrentRow(NotificationCatalog catalog, EventConfigRow row) {
+            this.catalog = catalog;
+            this.row = row;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.search;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bitmap index of an {@link EventConfigTable}: for each column and value,
+ * the rows holding that value as a {@link RowBitmap}. A filter is the union
+ * of the selected values' bitmaps within each column, intersected across
+ * the filtered columns; no row is compared.
+ *
+ * Each column's rows are grouped by value once, with a counting sort, when
+ * the column is first filtered on. A value's compressed bitmap is then built
+ * from its group the first time it is selected and kept, so a column with
+ * a million distinct notification messages pays only for those picked.
+ */
+final class EventConfigIndex {
+
+    private final EventConfigTable table;
+    private final RowBitmap all;
+    private final AtomicReferenceArray<Column> columns = new AtomicReferenceArray<>(CatalogSection.values().length);
+
+    EventConfigIndex(EventConfigTable table) {
+        this.table = table;
+        this.all = RowBitmap.range(table.size());
+    }
+
+    /**
+     * Rows matching the selections: per section, rows with any selected
+     * value. An empty (or missing) selection does not filter that section.
+     */
+    RowBitmap filter(Map<CatalogSection, BitSet> selections) {
+        List<RowBitmap> matches = new ArrayList<>(selections.size());
+        for (Map.Entry<CatalogSection, BitSet> e : selections.entrySet()) {
+            BitSet selected = e.getValue();
+            if (selected == null || selected.isEmpty()) continue;
+            Column column = column(e.getKey());
+            List<RowBitmap> values = new ArrayList<>();
+            for (int v = selected.nextSetBit(0); v >= 0 && v < column.values(); v = selected.nextSetBit(v + 1)) {
+                RowBitmap rows = column.rows(v);
+                if (!rows.isEmpty()) values.add(rows);
+            }
+            if (values.isEmpty()) return RowBitmap.EMPTY;
+            matches.add(RowBitmap.or(values));
+        }
+        return matches.isEmpty() ? all : RowBitmap.and(matches);
+    }
+
+    private Column column(CatalogSection section) {
+        Column column = columns.get(section.ordinal());
+        if (column == null) {
+            column = new Column(table.column(section));
+            if (!columns.compareAndSet(section.ordinal(), null, column)) column = columns.get(section.ordinal());
+        }
+        return column;
+    }
+
+    /* One column's rows grouped by value: rows[starts[v], starts[v + 1]) ascending, plus the bitmaps built so far */
+    private static final class Column {
+        private final int[] starts;
+        private final int[] rows;
+        private final AtomicReferenceArray<RowBitmap> bitmaps;
+
+        Column(IntBuffer values) {
+            int n = values.limit(), max = -1;
+            for (int row = 0; row < n; row++) max = Math.max(max, values.get(row));
+            starts = new int[max + 2];
+            for (int row = 0; row < n; row++) starts[values.get(row) + 1]++;
+            for (int v = 0; v <= max; v++) starts[v + 1] += starts[v];
+            rows = new int[n];
+            int[] fill = starts.clone();
+            for (int row = 0; row < n; row++) rows[fill[values.get(row)]++] = row;
+            bitmaps = new AtomicReferenceArray<>(max + 1);
+        }
+
+        int values() { return starts.length - 1; }
+
+        RowBitmap rows(int value) {
+            RowBitmap bitmap = bitmaps.get(value);
+            if (bitmap == null) {
+                // racing builders produce equal bitmaps; either may stay
+                bitmap = RowBitmap.of(rows, starts[value], starts[value + 1]);
+                bitmaps.lazySet(value, bitmap);
+            }
+            return bitmap;
+        }
+    }
+}
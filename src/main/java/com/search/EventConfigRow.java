@@ -0,0 +1,40 @@
+package com.search;
+
+/**
+ * One row of the event configuration table, with its labels resolved for
+ * display. Built only for the rows of the page being rendered; see
+ * {@link EventConfigDataModel}.
+ */
+public final class EventConfigRow {
+
+    private final int id;
+    private final String store;
+    private final String eventType;
+    private final String eventCode;
+    private final String pickupType;
+    private final String notificationMessage;
+    private final String disabledReason;
+
+    EventConfigRow(int id, String store, String eventType, String eventCode, String pickupType,
+                   String notificationMessage, String disabledReason) {
+        this.id = id;
+        this.store = store;
+        this.eventType = eventType;
+        this.eventCode = eventCode;
+        this.pickupType = pickupType;
+        this.notificationMessage = notificationMessage;
+        this.disabledReason = disabledReason;
+    }
+
+    /** Configuration number; stable across catalog reloads. */
+    public int getId() { return id; }
+    public String getStore() { return store; }
+    /** Event type of the event code, or "" if it has none. */
+    public String getEventType() { return eventType; }
+    public String getEventCode() { return eventCode; }
+    public String getPickupType() { return pickupType; }
+    public String getNotificationMessage() { return notificationMessage; }
+    public boolean isEnabled() { return disabledReason == null; }
+    /** Why the configuration is disabled, or "" if it is enabled. */
+    public String getDisabledReason() { return disabledReason == null ? "" : disabledReason; }
+}
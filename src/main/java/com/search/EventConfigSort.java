@@ -0,0 +1,162 @@
+package com.search;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Sort orders of a catalog's {@link EventConfigTable}, for the sortable
+ * columns of the event configuration table.
+ *
+ * A column's order is a permutation of the row numbers, built the first
+ * time the column is sorted on and shared by every session until a reload
+ * replaces the catalog. Labels are compared once each, through their
+ * {@link CollationKey}s, which gives every value a rank; the rows are then
+ * placed by a counting sort on that rank (ties stay in configuration number
+ * order), so building an order is linear in the rows and sorting a page
+ * never compares strings. Sessions that filter keep their matching rows in
+ * this order too, see {@link #sort}.
+ */
+final class EventConfigSort {
+
+    /** The sortable columns, by the row property they show. */
+    enum Column {
+        STORE("store"),
+        EVENT_TYPE("eventType"),
+        EVENT_CODE("eventCode"),
+        PICKUP_TYPE("pickupType");
+
+        private final String property;
+
+        Column(String property) { this.property = property; }
+
+        /** The column showing {@code property} of an {@link EventConfigRow}, or null. */
+        static Column of(String property) {
+            for (Column c : values()) {
+                if (c.property.equals(property)) return c;
+            }
+            return null;
+        }
+    }
+
+    private final NotificationCatalog catalog;
+    private final EventConfigTable table;
+
+    /* Per column: rank of each value by collation, and the rows in that order; built on first use */
+    private final AtomicReferenceArray<int[]> ranks = new AtomicReferenceArray<>(Column.values().length);
+    private final AtomicReferenceArray<int[]> orders = new AtomicReferenceArray<>(Column.values().length);
+
+    /* Event type of each event code, types.size() for none */
+    private volatile int[] typeOfCode;
+
+    EventConfigSort(NotificationCatalog catalog) {
+        this.catalog = catalog;
+        this.table = catalog.getEventConfigs();
+    }
+
+    /** All rows, ascending by the column; shared, do not modify. */
+    int[] order(Column column) {
+        int[] order = orders.get(column.ordinal());
+        if (order == null) {
+            int[] rank = ranks(column);
+            int n = table.size();
+            int[] starts = new int[rank.length + 1];
+            for (int row = 0; row < n; row++) starts[rank[value(column, row)] + 1]++;
+            for (int r = 0; r < rank.length; r++) starts[r + 1] += starts[r];
+            order = new int[n];
+            for (int row = 0; row < n; row++) order[starts[rank[value(column, row)]]++] = row;
+            // racing builders produce equal orders; either may stay
+            orders.lazySet(column.ordinal(), order);
+        }
+        return order;
+    }
+
+    /**
+     * The given rows, ascending by the column: a pass over the column's
+     * order keeping the matching rows, or for a few rows out of many, a sort
+     * of just those.
+     */
+    int[] sort(Column column, RowBitmap rows) {
+        int m = rows.cardinality(), n = table.size();
+        if (m == n) return order(column);
+        int[] out = new int[m];
+        if ((long) m * 16 < n) {
+            long[] keys = new long[m];
+            int i = 0;
+            for (int row = rows.next(0); row >= 0; row = rows.next(row + 1)) keys[i++] = key(column, row);
+            Arrays.sort(keys);
+            for (i = 0; i < m; i++) out[i] = (int) keys[i];
+        } else {
+            int i = 0;
+            for (int row : order(column)) {
+                if (rows.contains(row)) out[i++] = row;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Sort key of a row in the column's order: its value's rank, then the
+     * row. Orders and sorted rows are ascending by it.
+     */
+    long key(Column column, int row) {
+        return (long) ranks(column)[value(column, row)] << 32 | row;
+    }
+
+    /* Value of the row in the column: an ordinal into labels(column) */
+    private int value(Column column, int row) {
+        switch (column) {
+            case STORE: return table.store(row);
+            case EVENT_TYPE: return typeOfCode()[table.eventCode(row)];
+            case EVENT_CODE: return table.eventCode(row);
+            default: return table.pickupType(row);
+        }
+    }
+
+    private List<String> labels(Column column) {
+        switch (column) {
+            case STORE: return catalog.getStores();
+            case EVENT_TYPE: return catalog.getEventTypes();
+            case EVENT_CODE: return catalog.getEventCodes();
+            default: return catalog.getPickupTypes();
+        }
+    }
+
+    /* Rank of each value by its collation key; equal keys share a rank. Event types end with "" (no type). */
+    private int[] ranks(Column column) {
+        int[] rank = ranks.get(column.ordinal());
+        if (rank == null) {
+            List<String> labels = labels(column);
+            int n = labels.size() + (column == Column.EVENT_TYPE ? 1 : 0);
+            Collator collator = Collator.getInstance();
+            CollationKey[] keys = new CollationKey[n];
+            for (int v = 0; v < n; v++) keys[v] = collator.getCollationKey(v < labels.size() ? labels.get(v) : "");
+            Integer[] byKey = new Integer[n];
+            for (int v = 0; v < n; v++) byKey[v] = v;
+            Arrays.sort(byKey, (a, b) -> keys[a].compareTo(keys[b]));
+            rank = new int[n];
+            for (int i = 0, r = 0; i < n; i++) {
+                if (i > 0 && keys[byKey[i]].compareTo(keys[byKey[i - 1]]) != 0) r++;
+                rank[byKey[i]] = r;
+            }
+            ranks.lazySet(column.ordinal(), rank);
+        }
+        return rank;
+    }
+
+    private int[] typeOfCode() {
+        int[] types = typeOfCode;
+        if (types == null) {
+            List<String> codes = catalog.getEventCodes();
+            types = new int[codes.size()];
+            for (int code = 0; code < types.length; code++) {
+                int type = catalog.eventTypeIndex(catalog.getEventCodeTypes().get(codes.get(code)));
+                types[code] = type < 0 ? catalog.getEventTypes().size() : type;
+            }
+            typeOfCode = types;
+        }
+        return types;
+    }
+}
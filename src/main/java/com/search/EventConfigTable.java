@@ -0,0 +1,117 @@
+package com.search;
+
+import java.nio.IntBuffer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The configured store / event code / pickup type / notification message
+ * combinations of a {@link NotificationCatalog}: the rows of the event
+ * configuration table.
+ *
+ * Rows are stored by column as catalog ordinals, one int per row and
+ * column, in ascending order of their configuration number. The number
+ * identifies a row across catalog reloads (it is the row key the table
+ * pages by). Like the notification tables, the columns are heap arrays or
+ * views of a mapped {@link CatalogIndexFile}; labels are looked up only for
+ * the rows on screen. Filtering goes through an {@link EventConfigIndex},
+ * built on first use.
+ */
+public final class EventConfigTable {
+
+    static final EventConfigTable EMPTY = of(new int[0], new int[0], new int[0], new int[0], new int[0],
+            new int[0], Collections.<String>emptyList());
+
+    private final IntBuffer ids;
+    private final IntBuffer stores;
+    private final IntBuffer eventCodes;
+    private final IntBuffer pickupTypes;
+    private final IntBuffer notifications;
+
+    /* Per row: index into reasonTexts if the configuration is disabled, else -1 */
+    private final IntBuffer reasons;
+    private final TextTable reasonTexts;
+
+    private volatile EventConfigIndex index;
+
+    EventConfigTable(IntBuffer ids, IntBuffer stores, IntBuffer eventCodes, IntBuffer pickupTypes,
+                     IntBuffer notifications, IntBuffer reasons, TextTable reasonTexts) {
+        this.ids = ids;
+        this.stores = stores;
+        this.eventCodes = eventCodes;
+        this.pickupTypes = pickupTypes;
+        this.notifications = notifications;
+        this.reasons = reasons;
+        this.reasonTexts = reasonTexts;
+    }
+
+    /** Heap table over the given columns; {@code ids} must be ascending. */
+    static EventConfigTable of(int[] ids, int[] stores, int[] eventCodes, int[] pickupTypes,
+                               int[] notifications, int[] reasons, List<String> reasonTexts) {
+        return new EventConfigTable(IntBuffer.wrap(ids), IntBuffer.wrap(stores), IntBuffer.wrap(eventCodes),
+                IntBuffer.wrap(pickupTypes), IntBuffer.wrap(notifications), IntBuffer.wrap(reasons),
+                TextTable.of(reasonTexts));
+    }
+
+    public int size() { return ids.limit(); }
+
+    /** Configuration number of row {@code row}. */
+    public int id(int row) { return ids.get(row); }
+
+    int store(int row) { return stores.get(row); }
+    int eventCode(int row) { return eventCodes.get(row); }
+    int pickupType(int row) { return pickupTypes.get(row); }
+    int notification(int row) { return notifications.get(row); }
+
+    public boolean isEnabled(int row) { return reasons.get(row) < 0; }
+
+    /** Why row {@code row} is disabled, or null if it is enabled. */
+    public String disabledReason(int row) {
+        int reason = reasons.get(row);
+        return reason < 0 ? null : reasonTexts.get(reason);
+    }
+
+    /* The ordinals column referring to section */
+    IntBuffer column(CatalogSection section) {
+        switch (section) {
+            case STORES: return stores();
+            case EVENT_CODES: return eventCodes();
+            case PICKUP_TYPES: return pickupTypes();
+            default: return notifications();
+        }
+    }
+
+    /* Bitmap index over the columns, built on first use */
+    EventConfigIndex index() {
+        EventConfigIndex i = index;
+        if (i == null) {
+            synchronized (this) {
+                i = index;
+                if (i == null) index = i = new EventConfigIndex(this);
+            }
+        }
+        return i;
+    }
+
+    /** Row of configuration number {@code id}, or {@code -(insertion point) - 1} if there is none. */
+    public int rowOf(int id) {
+        int lo = 0, hi = ids.limit() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int v = ids.get(mid);
+            if (v < id) lo = mid + 1;
+            else if (v > id) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    /* Raw columns, for CatalogIndexFile */
+    IntBuffer ids() { return ids.duplicate(); }
+    IntBuffer stores() { return stores.duplicate(); }
+    IntBuffer eventCodes() { return eventCodes.duplicate(); }
+    IntBuffer pickupTypes() { return pickupTypes.duplicate(); }
+    IntBuffer notifications() { return notifications.duplicate(); }
+    IntBuffer reasons() { return reasons.duplicate(); }
+    TextTable reasonTexts() { return reasonTexts; }
+}
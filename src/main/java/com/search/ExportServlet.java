@@ -0,0 +1,272 @@
+package com.search;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Plain servlet streaming CSV or JSON downloads of the event configuration
+ * table and of the session's selections.
+ *
+ * Answers {@code GET /export?what=configurations|selections&format=csv|json[&scope=table]}.
+ * Configurations are every row of the shared catalog in configuration number
+ * order, or with {@code scope=table} the rows the session's table shows
+ * (its selections and sort order, all pages). Selections are the labels
+ * selected per section. An existing session is only read; without one the
+ * table shows every row and nothing is selected.
+ *
+ * Rows are written as they are walked, from one catalog snapshot: each is
+ * appended to one builder, which goes out through one char buffer a chunk
+ * at a time. No length is set, so the container sends the response chunked,
+ * and the header is flushed first so the download starts at once. Memory
+ * stays the same for a million rows as for ten.
+ */
+public class ExportServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Histogram LATENCY = Metrics.latency("export");
+    private static final Histogram ROWS = Metrics.size("export.rows", "rows");
+
+    /* Text handed to the response at a time, in chars (also its buffer size) */
+    private static final int CHUNK = 8192;
+
+    private static final String BEAN = "selfServiceSettingsBBean";
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        String what = request.getParameter("what");
+        if (what == null || what.isEmpty()) what = "configurations";
+        if (!"configurations".equals(what) && !"selections".equals(what)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown export: " + what);
+            return;
+        }
+        boolean json = "json".equals(request.getParameter("format"));
+        EventConfigDataModel model = model(request);
+
+        response.setContentType(json ? "application/json" : "text/csv");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("Content-Disposition",
+                "attachment; filename=\"" + what + (json ? ".json" : ".csv") + "\"");
+        response.setBufferSize(CHUNK);
+        Chunks out = new Chunks(response.getWriter());
+
+        long rows;
+        if ("selections".equals(what)) {
+            List<SelectionSet.Snapshot> selections = selections(model);
+            NotificationCatalog catalog = selections.isEmpty()
+                    ? CatalogService.getInstance().getCatalog() : selections.get(0).catalog;
+            rows = json ? selectionsJson(catalog, selections, out) : selectionsCsv(catalog, selections, out);
+        } else {
+            EventConfigDataModel.Cursor cursor = model != null && "table".equals(request.getParameter("scope"))
+                    ? model.cursor() : EventConfigDataModel.cursor(CatalogService.getInstance().getCatalog());
+            rows = json ? configurationsJson(cursor, out) : configurationsCsv(cursor, out);
+        }
+        out.flush();
+        ROWS.record(rows);
+        LATENCY.recordSince(start);
+    }
+
+    /* ===== Configurations ===== */
+
+    private static long configurationsCsv(EventConfigDataModel.Cursor cursor, Chunks out) throws IOException {
+        NotificationCatalog catalog = cursor.catalog();
+        EventConfigTable table = catalog.getEventConfigs();
+        StringBuilder sb = out.sb;
+        sb.append("id,store,eventType,eventCode,pickupType,notificationMessage,enabled,disabledReason\r\n");
+        out.flush();
+        long rows = 0;
+        for (int row = cursor.next(); row >= 0; row = cursor.next(), rows++) {
+            String code = catalog.getEventCodes().get(table.eventCode(row));
+            sb.append(table.id(row)).append(',');
+            csv(sb, catalog.getStores().get(table.store(row))).append(',');
+            csv(sb, catalog.getEventCodeTypes().get(code)).append(',');
+            csv(sb, code).append(',');
+            csv(sb, catalog.getPickupTypes().get(table.pickupType(row))).append(',');
+            csv(sb, catalog.getNotificationMessages().get(table.notification(row))).append(',');
+            sb.append(table.isEnabled(row)).append(',');
+            csv(sb, table.disabledReason(row)).append("\r\n");
+            out.rowDone();
+        }
+        return rows;
+    }
+
+    private static long configurationsJson(EventConfigDataModel.Cursor cursor, Chunks out) throws IOException {
+        NotificationCatalog catalog = cursor.catalog();
+        EventConfigTable table = catalog.getEventConfigs();
+        TextTable notifications = catalog.notifications().json;
+        StringBuilder sb = out.sb;
+        sb.append("{\"version\":").append(catalog.getVersion())
+          .append(",\"count\":").append(cursor.count()).append(",\"rows\":[");
+        out.flush();
+        long rows = 0;
+        for (int row = cursor.next(); row >= 0; row = cursor.next(), rows++) {
+            String code = catalog.getEventCodes().get(table.eventCode(row));
+            String reason = table.disabledReason(row);
+            if (rows > 0) sb.append(',');
+            sb.append("\n{\"id\":").append(table.id(row));
+            json(sb.append(",\"store\":"), catalog.getStores().get(table.store(row)));
+            json(sb.append(",\"eventType\":"), catalog.getEventCodeTypes().get(code));
+            json(sb.append(",\"eventCode\":"), code);
+            json(sb.append(",\"pickupType\":"), catalog.getPickupTypes().get(table.pickupType(row)));
+            sb.append(",\"notificationMessage\":");
+            notifications.appendTo(sb, table.notification(row));
+            sb.append(",\"enabled\":").append(reason == null);
+            json(sb.append(",\"disabledReason\":"), reason).append('}');
+            out.rowDone();
+        }
+        sb.append("\n]}\n");
+        return rows;
+    }
+
+    /* ===== Selections ===== */
+
+    /*
+     * The session's selections, each with the catalog its bits are ordinals
+     * of, all of one catalog (taken again if a reload came in between);
+     * empty without a session.
+     */
+    private static List<SelectionSet.Snapshot> selections(EventConfigDataModel model) {
+        List<SelectionSet.Snapshot> out = new ArrayList<>();
+        if (model == null) return out;
+        while (true) {
+            out.clear();
+            for (SelectionSet selection : model.selections()) out.add(selection.snapshot());
+            boolean same = true;
+            for (SelectionSet.Snapshot s : out) same &= s.catalog == out.get(0).catalog;
+            if (same) return out;
+        }
+    }
+
+    private static long selectionsCsv(NotificationCatalog catalog, List<SelectionSet.Snapshot> selections, Chunks out)
+            throws IOException {
+        StringBuilder sb = out.sb;
+        sb.append("section,label\r\n");
+        out.flush();
+        long rows = 0;
+        for (SelectionSet.Snapshot selection : selections) {
+            List<String> labels = catalog.labels(selection.section);
+            BitSet selected = selection.bits;
+            for (int ord = selected.nextSetBit(0); ord >= 0 && ord < labels.size(); ord = selected.nextSetBit(ord + 1)) {
+                sb.append(name(selection.section)).append(',');
+                csv(sb, labels.get(ord)).append("\r\n");
+                out.rowDone();
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static long selectionsJson(NotificationCatalog catalog, List<SelectionSet.Snapshot> selections, Chunks out)
+            throws IOException {
+        StringBuilder sb = out.sb;
+        sb.append("{\"version\":").append(catalog.getVersion());
+        out.flush();
+        long rows = 0;
+        for (SelectionSet.Snapshot selection : selections) {
+            List<String> labels = catalog.labels(selection.section);
+            BitSet selected = selection.bits;
+            sb.append(",\"").append(name(selection.section)).append("\":[");
+            int n = 0;
+            for (int ord = selected.nextSetBit(0); ord >= 0 && ord < labels.size(); ord = selected.nextSetBit(ord + 1)) {
+                if (n++ > 0) sb.append(',');
+                json(sb.append('\n'), labels.get(ord));
+                out.rowDone();
+            }
+            sb.append(']');
+            rows += n;
+        }
+        sb.append("}\n");
+        return rows;
+    }
+
+    /* Section name as the page's dropdowns and the bean's properties call it */
+    private static String name(CatalogSection section) {
+        switch (section) {
+            case STORES: return "stores";
+            case EVENT_CODES: return "eventCodes";
+            case PICKUP_TYPES: return "pickupTypes";
+            default: return "notifications";
+        }
+    }
+
+    /* ===== Formatting ===== */
+
+    /* A CSV field (RFC 4180): quoted, with quotes doubled, if it holds a comma, quote or line break; null is empty */
+    private static StringBuilder csv(StringBuilder sb, String s) {
+        if (s == null) return sb;
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) return sb.append(s);
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') sb.append('"');
+            sb.append(c);
+        }
+        return sb.append('"');
+    }
+
+    /* A JSON string, or null */
+    private static StringBuilder json(StringBuilder sb, String s) {
+        if (s == null) return sb.append("null");
+        sb.append('"');
+        NotificationCatalog.escapeJson(s, sb);
+        return sb.append('"');
+    }
+
+    /* The session's table model if a session already exists; never creates one */
+    private static EventConfigDataModel model(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session == null) return null;
+        SelfServiceSettingsBBean bean = (SelfServiceSettingsBBean) session.getAttribute(BEAN);
+        return bean == null ? null : bean.getSmartNotificationEventMessages();
+    }
+
+    /*
+     * Response text, built in sb and written out once a chunk's worth is
+     * there, through one char buffer; both are reused for the whole export.
+     */
+    private static final class Chunks {
+        final StringBuilder sb = new StringBuilder(CHUNK + 1024);
+        private final char[] buffer = new char[CHUNK];
+        private final Writer out;
+
+        Chunks(Writer out) { this.out = out; }
+
+        /* Writes out sb once a chunk is full */
+        void rowDone() throws IOException {
+            if (sb.length() >= CHUNK) drain();
+        }
+
+        /* Writes out sb and sends what the response holds to the client */
+        void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+
+        private void drain() throws IOException {
+            int len = sb.length();
+            for (int from = 0; from < len; from += buffer.length) {
+                int n = Math.min(buffer.length, len - from);
+                sb.getChars(from, from + n, buffer, 0);
+                out.write(buffer, 0, n);
+            }
+            sb.setLength(0);
+        }
+    }
+}
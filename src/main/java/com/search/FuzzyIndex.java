@@ -0,0 +1,214 @@
+package com.search;
+
+import java.nio.IntBuffer;
+import java.util.*;
+
+/**
+ * Typo-tolerant term index: a sorted dictionary of the words in every search
+ * key, each with a posting list of ordinals.
+ *
+ * A query term is matched against the dictionary with a Levenshtein
+ * automaton simulated over the sorted terms: dynamic-programming rows are
+ * shared between terms with a common prefix, and a whole prefix range is
+ * skipped (or accepted) as soon as its row proves no (or every) completion
+ * is within the edit budget. Only a small part of the dictionary is ever
+ * visited, and no distance is computed against individual catalog entries.
+ *
+ * Matching is prefix-tolerant ("perscrip" finds "prescription"), since the
+ * user is usually still typing the last word: a term matches when a prefix
+ * of it at least as long as the query word, or the whole term, is within
+ * budget. Shorter prefixes do not count, or "prescx" would take every
+ * "pres..." term (two edits away from "pres").
+ *
+ * Like {@link TrigramIndex} it is stored flat (a {@link TextTable} of terms
+ * and one int buffer of postings) so it can be mapped from a
+ * {@link CatalogIndexFile}.
+ */
+public class FuzzyIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final int size;
+    private final TextTable terms;
+
+    /* Postings of term t are postings[starts[t], starts[t+1]) */
+    private final IntBuffer starts;
+    private final IntBuffer postings;
+    private final int maxTermLength;
+
+    public FuzzyIndex(TrigramIndex index) {
+        size = index.size();
+        TreeMap<String, List<Integer>> dictionary = new TreeMap<>();
+        for (int ord = 0; ord < size; ord++) {
+            for (String term : tokenize(index.key(ord))) {
+                List<Integer> list = dictionary.get(term);
+                if (list == null) {
+                    list = new ArrayList<>(2);
+                    dictionary.put(term, list);
+                }
+                if (list.isEmpty() || list.get(list.size() - 1) != ord) list.add(ord);
+            }
+        }
+
+        int[] startTable = new int[dictionary.size() + 1];
+        int t = 0, total = 0, longest = 0;
+        for (Map.Entry<String, List<Integer>> e : dictionary.entrySet()) {
+            total += e.getValue().size();
+            startTable[++t] = total;
+            longest = Math.max(longest, e.getKey().length());
+        }
+        int[] all = new int[total];
+        t = 0;
+        for (List<Integer> list : dictionary.values()) {
+            int at = startTable[t++];
+            for (int i = 0; i < list.size(); i++) all[at + i] = list.get(i);
+        }
+
+        terms = TextTable.of(new ArrayList<>(dictionary.keySet()));
+        starts = IntBuffer.wrap(startTable);
+        postings = IntBuffer.wrap(all);
+        maxTermLength = longest;
+    }
+
+    /* Over prebuilt (e.g. mapped) tables, see CatalogIndexFile */
+    FuzzyIndex(int size, TextTable terms, IntBuffer starts, IntBuffer postings) {
+        this.size = size;
+        this.terms = terms;
+        this.starts = starts;
+        this.postings = postings;
+        int longest = 0;
+        for (int t = 0; t < terms.size(); t++) longest = Math.max(longest, terms.length(t));
+        this.maxTermLength = longest;
+    }
+
+    TextTable terms() { return terms; }
+    IntBuffer starts() { return starts.duplicate(); }
+    IntBuffer postings() { return postings.duplicate(); }
+
+    /**
+     * Edits tolerated for a query term of the given length. Two only from
+     * eight chars: with two, a six-char word is two edits away from terms
+     * sharing just its first four chars.
+     */
+    static int editBudget(int termLength) {
+        if (termLength <= 2) return 0;
+        if (termLength <= 7) return 1;
+        return 2;
+    }
+
+    /**
+     * Ordinals (ascending) of entries containing, for every word of the
+     * normalized query, some word within its edit budget of it.
+     */
+    public int[] search(String query) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) return EMPTY;
+
+        BitSet result = null;
+        for (String q : queryTerms) {
+            BitSet hits = new BitSet(size);
+            collect(q, editBudget(q.length()), hits);
+            if (result == null) {
+                result = hits;
+            } else {
+                result.and(hits);
+            }
+            if (result.isEmpty()) return EMPTY;
+        }
+
+        int[] out = new int[result.cardinality()];
+        int n = 0;
+        for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) out[n++] = i;
+        return out;
+    }
+
+    /* Walks the sorted dictionary, reusing DP rows across shared prefixes */
+    private void collect(String q, int budget, BitSet hits) {
+        int m = q.length();
+        // past depth m + budget every cell exceeds the budget, so deeper rows are never needed
+        int[][] rows = new int[Math.min(maxTermLength, m + budget) + 1][m + 1];
+        for (int j = 0; j <= m; j++) rows[0][j] = j;
+
+        int prev = -1;
+        int valid = 0; // rows[0..valid] hold the DP for prev's first 'valid' chars
+
+        int count = terms.size();
+        int i = 0;
+        outer:
+        while (i < count) {
+            int depth = prev < 0 ? 0 : Math.min(valid, terms.commonPrefix(prev, i));
+            int limit = Math.min(terms.length(i), rows.length - 1);
+
+            while (depth < limit) {
+                int[] above = rows[depth];
+                int[] row = rows[++depth];
+                char c = terms.charAt(i, depth - 1);
+                row[0] = depth;
+                int min = row[0];
+                for (int j = 1; j <= m; j++) {
+                    int cost = q.charAt(j - 1) == c ? 0 : 1;
+                    row[j] = Math.min(Math.min(row[j - 1] + 1, above[j] + 1), above[j - 1] + cost);
+                    if (row[j] < min) min = row[j];
+                }
+
+                if (row[m] <= budget && depth == terms.length(i) && depth < m) {
+                    // a whole term shorter than the query, within budget: it alone matches, longer ones go on
+                    addAll(starts.get(i), starts.get(i + 1), hits);
+                } else if (row[m] <= budget && depth >= m) {
+                    // the query is within budget of this prefix, as long as it: accept every term under it
+                    int end = prefixEnd(i, depth);
+                    addAll(starts.get(i), starts.get(end), hits);
+                    prev = i;
+                    valid = depth - 1;
+                    i = end;
+                    continue outer;
+                }
+                if (min > budget) {
+                    // no completion of this prefix can come back within budget
+                    prev = i;
+                    valid = depth - 1;
+                    i = prefixEnd(i, depth);
+                    continue outer;
+                }
+            }
+            prev = i;
+            valid = depth;
+            i++;
+        }
+    }
+
+    /* First index after 'from' whose term does not share its first 'len' chars */
+    private int prefixEnd(int from, int len) {
+        int lo = from + 1, hi = terms.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (terms.commonPrefix(from, mid) >= len) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /* Postings of a contiguous term range; adjacent terms' lists are stored back to back */
+    private void addAll(int from, int to, BitSet hits) {
+        for (int p = from; p < to; p++) hits.set(postings.get(p));
+    }
+
+    /** Splits a normalized key or query into words (runs of letters/digits). */
+    static List<String> tokenize(String s) {
+        List<String> out = new ArrayList<>();
+        int start = -1;
+        for (int i = 0, n = s.length(); i <= n; i++) {
+            boolean word = i < n && Character.isLetterOrDigit(s.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                out.add(s.substring(start, i));
+                start = -1;
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,111 @@
+package com.search;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative long values (latencies in nanoseconds,
+ * result sizes), cheap enough to record on every request.
+ *
+ * Buckets are log-linear like HdrHistogram's: values below 16 get a bucket
+ * each, and every power-of-two range above that is split into 16 equal
+ * sub-buckets, so any percentile is within about 6% of the true value.
+ * Recording is one bucket increment plus two adders, no locks or
+ * allocation. Values are reported divided by {@code scale} (e.g. 1000 to
+ * show nanoseconds as microseconds).
+ */
+public final class Histogram implements HistogramMXBean {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+
+    /* Larger values (over 2^42, e.g. 73 minutes in ns) land in the last bucket */
+    private static final long MAX_VALUE = (1L << 42) - 1;
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final String unit;
+    private final long scale;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public Histogram(String unit, long scale) {
+        this.unit = unit;
+        this.scale = scale;
+    }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(index(Math.min(value, MAX_VALUE)));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /** Records the time elapsed since {@code startNanos} (from {@link System#nanoTime}). */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /* ===== HistogramMXBean ===== */
+    @Override public String getUnit() { return unit; }
+    @Override public long getCount() { return count.sum(); }
+
+    @Override
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0d : (double) sum.sum() / n / scale;
+    }
+
+    @Override public double getMax() { return (double) max.get() / scale; }
+    @Override public double getP50() { return percentile(0.50); }
+    @Override public double getP90() { return percentile(0.90); }
+    @Override public double getP99() { return percentile(0.99); }
+    @Override public double getP999() { return percentile(0.999); }
+
+    /**
+     * Upper bound of the bucket holding the {@code q}-quantile (0..1),
+     * capped at the largest recorded value. Reads the buckets without
+     * stopping writers, so it may miss values recorded meanwhile.
+     */
+    public double percentile(double q) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += snapshot[i] = counts.get(i);
+        if (total == 0) return 0d;
+
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return (double) Math.min(lowest(i + 1) - 1, max.get()) / scale;
+        }
+        return getMax();
+    }
+
+    /** Clears all values; values recorded concurrently may be half-counted. */
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /* Values below SUB map to themselves, then 16 buckets per power of two */
+    static int index(long value) {
+        if (value < SUB) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) - SUB);
+    }
+
+    /* Smallest value of bucket i (inverse of index) */
+    static long lowest(int i) {
+        if (i < SUB) return i;
+        int shift = (i >>> SUB_BITS) - 1;
+        return (long) ((i & (SUB - 1)) + SUB) << shift;
+    }
+}
@@ -0,0 +1,25 @@
+package com.search;
+
+/**
+ * JMX view of a {@link Histogram}; values are in {@link #getUnit()}.
+ */
+public interface HistogramMXBean {
+
+    String getUnit();
+
+    long getCount();
+
+    double getMean();
+
+    double getMax();
+
+    double getP50();
+
+    double getP90();
+
+    double getP99();
+
+    double getP999();
+
+    void reset();
+}
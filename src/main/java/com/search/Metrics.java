@@ -0,0 +1,129 @@
+package com.search;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Named {@link Histogram}s of the request paths, published as platform
+ * MBeans while the application runs.
+ *
+ * Latencies appear as {@code com.search:type=Latency,name=...} (in
+ * microseconds), size distributions as {@code com.search:type=Size,name=...},
+ * and the suggestion cache counters as {@code com.search:type=SuggestionCache}.
+ * JSF phase timings ({@link PhaseTimingListener}) are latencies named
+ * {@code jsf <viewId> <action> <phase>}.
+ * Hot paths hold their histogram in a static field and record into it;
+ * {@link MetricsServlet} prints the same numbers as plain text.
+ */
+public final class Metrics {
+
+    private static final String DOMAIN = "com.search";
+
+    private static final ConcurrentMap<ObjectName, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    /* Set between start() and stop(); histograms created meanwhile register themselves */
+    private static volatile MBeanServer server;
+
+    private Metrics() { }
+
+    /** The latency histogram {@code name} (record nanoseconds, reported in microseconds). */
+    public static Histogram latency(String name) {
+        return histogram("Latency", name, "us", 1000);
+    }
+
+    /** The size histogram {@code name} (items, chars, ...). */
+    public static Histogram size(String name, String unit) {
+        return histogram("Size", name, unit, 1);
+    }
+
+    private static Histogram histogram(String type, String name, String unit, long scale) {
+        ObjectName id = objectName("type=" + type + ",name=" + (isPlain(name) ? name : ObjectName.quote(name)));
+        Histogram histogram = HISTOGRAMS.get(id);
+        if (histogram != null) return histogram;
+
+        Histogram created = new Histogram(unit, scale);
+        histogram = HISTOGRAMS.putIfAbsent(id, created);
+        if (histogram != null) return histogram;
+        MBeanServer s = server;
+        if (s != null) register(s, id, created);
+        return created;
+    }
+
+    /** Histograms by type and name, sorted, for reporting. */
+    static Map<String, Histogram> histograms() {
+        Map<String, Histogram> out = new TreeMap<>();
+        for (Map.Entry<ObjectName, Histogram> e : HISTOGRAMS.entrySet()) {
+            ObjectName id = e.getKey();
+            String name = id.getKeyProperty("name");
+            if (name.startsWith("\"")) name = ObjectName.unquote(name);
+            out.put(id.getKeyProperty("type") + " " + name, e.getValue());
+        }
+        return out;
+    }
+
+    /** Registers every metric with the platform MBean server. */
+    static void start() {
+        MBeanServer s = ManagementFactory.getPlatformMBeanServer();
+        server = s;
+        register(s, cacheName(), CatalogService.getInstance().getSuggestionCache());
+        for (Map.Entry<ObjectName, Histogram> e : HISTOGRAMS.entrySet()) register(s, e.getKey(), e.getValue());
+    }
+
+    /** Unregisters them again, so a redeployed application can take the names over. */
+    static void stop() throws JMException {
+        MBeanServer s = server;
+        if (s == null) return;
+        server = null;
+        unregister(s, cacheName());
+        for (ObjectName id : HISTOGRAMS.keySet()) unregister(s, id);
+    }
+
+    private static void register(MBeanServer s, ObjectName id, Object bean) {
+        try {
+            try {
+                s.registerMBean(bean, id);
+            } catch (InstanceAlreadyExistsException e) {
+                // left over from an earlier deployment, or registered by a racing start(): take it over
+                unregister(s, id);
+                s.registerMBean(bean, id);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register " + id, e);
+        }
+    }
+
+    private static void unregister(MBeanServer s, ObjectName id) throws JMException {
+        try {
+            s.unregisterMBean(id);
+        } catch (InstanceNotFoundException e) {
+            // never registered
+        }
+    }
+
+    /* Usable as an unquoted ObjectName value */
+    private static boolean isPlain(String name) {
+        if (name.isEmpty()) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (",=:\"*?\n".indexOf(name.charAt(i)) >= 0) return false;
+        }
+        return true;
+    }
+
+    private static ObjectName cacheName() { return objectName("type=SuggestionCache"); }
+
+    private static ObjectName objectName(String properties) {
+        try {
+            return new ObjectName(DOMAIN + ":" + properties);
+        } catch (JMException e) {
+            throw new IllegalArgumentException(properties, e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.search;
+
+import javax.management.JMException;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Publishes the {@link Metrics} MBeans for the lifetime of the web
+ * application, so they can be read with jconsole, VisualVM or any JMX
+ * client while the server is under load.
+ */
+public class MetricsListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        try {
+            Metrics.start();
+        } catch (RuntimeException e) {
+            event.getServletContext().log("Metrics MBeans could not be registered; requests are still measured", e);
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        try {
+            Metrics.stop();
+        } catch (JMException | RuntimeException e) {
+            event.getServletContext().log("Metrics MBeans were not unregistered cleanly", e);
+        }
+    }
+}
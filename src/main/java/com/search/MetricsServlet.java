@@ -0,0 +1,47 @@
+package com.search;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Plain-text dump of the {@link Metrics} for quick looks without a JMX
+ * client, one line per histogram:
+ * <pre>
+ *   Latency suggest us count=1200 mean=85.1 p50=71 p90=143 p99=415 p999=1983 max=2210
+ *   SuggestionCache hits=1104 misses=96 hitRatio=0.920 size=96 chars=51234 evictions=0 rejections=0
+ * </pre>
+ * Not mapped by default; see web.xml.
+ */
+public class MetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("text/plain");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        PrintWriter out = response.getWriter();
+
+        for (Map.Entry<String, Histogram> e : Metrics.histograms().entrySet()) {
+            Histogram h = e.getValue();
+            out.printf(Locale.ROOT, "%s %s count=%d mean=%.1f p50=%.0f p90=%.0f p99=%.0f p999=%.0f max=%.0f%n",
+                    e.getKey(), h.getUnit(), h.getCount(), h.getMean(),
+                    h.getP50(), h.getP90(), h.getP99(), h.getP999(), h.getMax());
+        }
+
+        SuggestionCache cache = CatalogService.getInstance().getSuggestionCache();
+        out.printf(Locale.ROOT, "SuggestionCache hits=%d misses=%d hitRatio=%.3f size=%d chars=%d evictions=%d rejections=%d%n",
+                cache.getHits(), cache.getMisses(), cache.getHitRatio(), cache.getSize(), cache.getChars(),
+                cache.getEvictions(), cache.getRejections());
+        out.flush();
+    }
+}
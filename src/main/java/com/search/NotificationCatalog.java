@@ -0,0 +1,477 @@
+package com.search;
+
+import java.nio.IntBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable catalog of event codes, pickup types, notification messages,
+ * tooltips and stores, together with the indexes derived from them and the
+ * configured combinations of them ({@link EventConfigTable}).
+ *
+ * One instance is shared by every session through {@link CatalogService};
+ * sessions keep only their own selection state.
+ *
+ * Event codes may belong to an event type. The per-type lists are views
+ * over the one event code table, backed by ordinal arrays computed once per
+ * catalog, so switching the type shown costs a lookup and selections (by
+ * event code ordinal) are unaffected by it.
+ *
+ * The notification messages (the part that grows to millions of entries)
+ * live in flat tables: built on the heap from a list, or mapped read-only
+ * from a prebuilt {@link CatalogIndexFile} without building anything.
+ */
+public final class NotificationCatalog {
+
+    /* Seeded from the clock so versions stay distinct across restarts */
+    private static final AtomicLong VERSIONS = new AtomicLong(System.currentTimeMillis() << 8);
+
+    /** A suggestion page with no items, in the shape every suggestion response has. */
+    public static final String EMPTY_PAGE_JSON = "{\"total\":0,\"offset\":0,\"items\":[]}";
+
+    /* Suggestion page size when the client does not ask, and the hard cap */
+    public static final int DEFAULT_SUGGESTION_LIMIT = 50;
+    public static final int MAX_SUGGESTION_LIMIT = 500;
+
+    /* Suggestion cache misses only: matches per searched (non-empty) query, see Metrics;
+       hits are not searched, so hot queries are under-represented */
+    private static final Histogram MATCHES = Metrics.size("suggestions.matches", "labels");
+
+    /* Distinguishes catalog builds, e.g. in suggestion cache keys */
+    private final long version = VERSIONS.incrementAndGet();
+
+    private final List<String> eventTypes;
+    private final List<String> eventCodes;
+    private final List<String> pickupTypes;
+    private final List<String> notificationMessages;
+    private final Map<String, String> eventCodeTooltips;
+    private final Map<String, String> eventCodeTypes;
+    private final List<String> stores;
+    private final EventConfigTable eventConfigs;
+
+    /* Sort orders of the configuration rows, built on first use */
+    private volatile EventConfigSort eventConfigSort;
+
+    /* Per event type: ascending event code ordinals, and the label view over them */
+    private final int[][] eventCodesByType;
+    private final List<List<String>> eventCodeViews;
+
+    /* label -> catalog ordinal, per section (notifications: binary search, see Notifications) */
+    private final Map<String, Integer> eventCodeOrdinals;
+    private final Map<String, Integer> pickupTypeOrdinals;
+    private final Map<String, Integer> notificationOrdinals;
+    private final Map<String, Integer> storeOrdinals;
+
+    private final Notifications notifications;
+
+    /* Response for the empty query's first page (the popup's initial list) */
+    private final String emptyQueryJson;
+
+    public NotificationCatalog(List<String> eventCodes, List<String> pickupTypes,
+                               List<String> notificationMessages, Map<String, String> eventCodeTooltips) {
+        this(eventCodes, pickupTypes, notificationMessages, eventCodeTooltips,
+                Collections.<String>emptyList(), Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * With event types: {@code eventCodeTypes} maps event codes to one of
+     * {@code eventTypes}; codes without a type are only listed under all types.
+     */
+    public NotificationCatalog(List<String> eventCodes, List<String> pickupTypes,
+                               List<String> notificationMessages, Map<String, String> eventCodeTooltips,
+                               List<String> eventTypes, Map<String, String> eventCodeTypes) {
+        this(eventCodes, pickupTypes, eventCodeTooltips, eventTypes, eventCodeTypes,
+                Notifications.build(notificationMessages), Collections.<String>emptyList(), EventConfigTable.EMPTY);
+    }
+
+    /* Configuration columns hold ordinals into these lists and the notifications; the caller checks them */
+    NotificationCatalog(List<String> eventCodes, List<String> pickupTypes, Map<String, String> eventCodeTooltips,
+                        List<String> eventTypes, Map<String, String> eventCodeTypes, Notifications notifications,
+                        List<String> stores, EventConfigTable eventConfigs) {
+        this.eventCodes = Collections.unmodifiableList(new ArrayList<>(eventCodes));
+        this.pickupTypes = Collections.unmodifiableList(new ArrayList<>(pickupTypes));
+        this.eventCodeTooltips = Collections.unmodifiableMap(new LinkedHashMap<>(eventCodeTooltips));
+        this.eventTypes = Collections.unmodifiableList(new ArrayList<>(eventTypes));
+        this.eventCodeTypes = Collections.unmodifiableMap(new LinkedHashMap<>(eventCodeTypes));
+        this.eventCodeOrdinals = ordinals(this.eventCodes);
+        this.eventCodesByType = byType(this.eventTypes, this.eventCodes, this.eventCodeTypes);
+        List<List<String>> views = new ArrayList<>(eventCodesByType.length);
+        for (int[] ords : eventCodesByType) views.add(new OrdinalList(this.eventCodes, ords));
+        this.eventCodeViews = Collections.unmodifiableList(views);
+        this.pickupTypeOrdinals = ordinals(this.pickupTypes);
+        this.stores = Collections.unmodifiableList(new ArrayList<>(stores));
+        this.storeOrdinals = ordinals(this.stores);
+        this.eventConfigs = eventConfigs;
+        this.notifications = notifications;
+        this.notificationMessages = notifications.labels.asList();
+        this.notificationOrdinals = notifications.new OrdinalMap();
+        this.emptyQueryJson = pageJson(slice(0, DEFAULT_SUGGESTION_LIMIT), notifications.size(), 0, null);
+    }
+
+    public long getVersion() { return version; }
+    public List<String> getEventCodes() { return eventCodes; }
+    public List<String> getPickupTypes() { return pickupTypes; }
+    public List<String> getNotificationMessages() { return notificationMessages; }
+    public Map<String, String> getEventCodeTooltips() { return eventCodeTooltips; }
+    public List<String> getEventTypes() { return eventTypes; }
+    public Map<String, String> getEventCodeTypes() { return eventCodeTypes; }
+    public List<String> getStores() { return stores; }
+    public EventConfigTable getEventConfigs() { return eventConfigs; }
+    public TrigramIndex getNotificationIndex() { return notifications.index; }
+    public FuzzyIndex getNotificationTerms() { return notifications.terms; }
+    Notifications notifications() { return notifications; }
+
+    public List<String> labels(CatalogSection section) {
+        switch (section) {
+            case EVENT_CODES: return eventCodes;
+            case PICKUP_TYPES: return pickupTypes;
+            case STORES: return stores;
+            default: return notificationMessages;
+        }
+    }
+
+    /** Index of the event type named {@code name}, or -1 (e.g. for "all types"). */
+    public int eventTypeIndex(String name) {
+        return name == null ? -1 : eventTypes.indexOf(name);
+    }
+
+    /** Event codes of event type {@code type} in catalog order; all of them if {@code type < 0}. */
+    public List<String> eventCodes(int type) {
+        return type < 0 || type >= eventCodeViews.size() ? eventCodes : eventCodeViews.get(type);
+    }
+
+    /* Ascending event code ordinals of the type, null for all types; shared, do not modify */
+    int[] eventCodesOfType(int type) {
+        return type < 0 || type >= eventCodesByType.length ? null : eventCodesByType[type];
+    }
+
+    /* Sort orders of the event configuration rows (one catalog's rows never change) */
+    EventConfigSort eventConfigSort() {
+        EventConfigSort sort = eventConfigSort;
+        if (sort == null) {
+            synchronized (this) {
+                sort = eventConfigSort;
+                if (sort == null) eventConfigSort = sort = new EventConfigSort(this);
+            }
+        }
+        return sort;
+    }
+
+    /** Row {@code row} of the event configuration table with its labels. */
+    public EventConfigRow eventConfigRow(int row) {
+        EventConfigTable t = eventConfigs;
+        String code = eventCodes.get(t.eventCode(row));
+        String type = eventCodeTypes.get(code);
+        return new EventConfigRow(t.id(row), stores.get(t.store(row)), type == null ? "" : type, code,
+                pickupTypes.get(t.pickupType(row)), notifications.labels.get(t.notification(row)),
+                t.disabledReason(row));
+    }
+
+    /** Ordinal of {@code label} within the section, or -1 if it is not in the catalog. */
+    public int ordinalOf(CatalogSection section, Object label) {
+        if (section == CatalogSection.NOTIFICATIONS) return notifications.ordinalOf(label);
+        Integer ord = ordinals(section).get(label);
+        return ord == null ? -1 : ord;
+    }
+
+    /** Read-only label -> ordinal map of the section. */
+    public Map<String, Integer> ordinals(CatalogSection section) {
+        switch (section) {
+            case EVENT_CODES: return eventCodeOrdinals;
+            case PICKUP_TYPES: return pickupTypeOrdinals;
+            case STORES: return storeOrdinals;
+            default: return notificationOrdinals;
+        }
+    }
+
+    /**
+     * One page of suggestions for a normalized query, as
+     * {@code {"total":n,"offset":o,"items":[...],"spans":[...]}}. For a
+     * non-empty query, {@code spans[i]} highlights {@code items[i]} as a flat
+     * {@code [start,length,...]} array of ascending, non-overlapping label
+     * ranges (UTF-16 positions): for each query term, the occurrence that
+     * matching credited. Fuzzy-only matches may have none. Matches are ranked by
+     * {@link SuggestionRanker}; the empty query lists the catalog in order.
+     * With a session {@code context}, a query that extends the previous one
+     * is narrowed from the previous matches instead of the index. In
+     * {@code fuzzy} mode, entries whose words are within a few edits of the
+     * query's words are added after the exact matches.
+     */
+    public String suggestionsJson(String query, int offset, int limit, SearchContext context, boolean fuzzy) {
+        if (query.isEmpty()) {
+            if (offset == 0 && limit == DEFAULT_SUGGESTION_LIMIT) return emptyQueryJson;
+            return pageJson(slice(offset, limit), notifications.size(), offset, null);
+        }
+        TrigramIndex index = notifications.index;
+        int[] matches = context == null ? index.search(query) : context.matches(this, query);
+        if (fuzzy) matches = union(matches, notifications.terms.search(query));
+        MATCHES.record(matches.length);
+        int[] page = SuggestionRanker.topK(matches, query, index, offset, limit);
+        return pageJson(page, matches.length, offset, TrigramIndex.terms(query));
+    }
+
+    /* Merge of two ascending ordinal arrays without duplicates */
+    private static int[] union(int[] a, int[] b) {
+        if (b.length == 0) return a;
+        if (a.length == 0) return b;
+        int[] out = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) out[n++] = a[i++];
+            else if (a[i] > b[j]) out[n++] = b[j++];
+            else { out[n++] = a[i++]; j++; }
+        }
+        while (i < a.length) out[n++] = a[i++];
+        while (j < b.length) out[n++] = b[j++];
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /* Ordinals offset..offset+limit-1 in catalog order, clipped to the catalog */
+    private int[] slice(int offset, int limit) {
+        int n = notifications.size();
+        int from = Math.min(offset, n);
+        int to = (int) Math.min((long) from + limit, n);
+        int[] page = new int[to - from];
+        for (int i = 0; i < page.length; i++) page[i] = from + i;
+        return page;
+    }
+
+    /* Concatenates pre-escaped fragments, plus highlight spans when there are query terms */
+    private String pageJson(int[] page, int total, int offset, String[] terms) {
+        String head = "{\"total\":" + total + ",\"offset\":" + offset + ",\"items\":[";
+        int len = head.length() + 2 + Math.max(0, page.length - 1);
+        TextTable fragments = notifications.json;
+        for (int ord : page) len += fragments.length(ord);
+        if (terms != null) len += 11 + page.length * (3 + terms.length * 8);
+
+        StringBuilder json = new StringBuilder(len);
+        json.append(head);
+        for (int i = 0; i < page.length; i++) {
+            if (i > 0) json.append(',');
+            fragments.appendTo(json, page[i]);
+        }
+        json.append(']');
+        if (terms != null) {
+            json.append(",\"spans\":[");
+            for (int i = 0; i < page.length; i++) {
+                if (i > 0) json.append(',');
+                appendSpans(json, page[i], terms);
+            }
+            json.append(']');
+        }
+        json.append('}');
+        return json.toString();
+    }
+
+    /*
+     * Spans of the terms in label ord as [start,length,...]. Found on the
+     * normalized key, then mapped back to the label, whose positions differ
+     * once decomposition or folding changed its length.
+     */
+    private void appendSpans(StringBuilder json, int ord, String[] terms) {
+        TextTable keys = notifications.index.keys();
+        long[] spans = new long[terms.length];
+        int count = 0;
+        int[] map = null;
+        for (String term : terms) {
+            int at = SuggestionRanker.occurrence(keys, ord, term);
+            if (at < 0) continue;
+            int start = at, end = at + term.length();
+            if (count == 0) {
+                map = SearchKeys.sourceMap(notifications.labels.get(ord));
+                if (map != null && map.length != 2 * keys.length(ord)) break; // not mappable
+            }
+            if (map != null) {
+                start = map[2 * start];
+                end = map[2 * end - 1];
+            }
+            spans[count++] = (long) start << 32 | end;
+        }
+        Arrays.sort(spans, 0, count);
+
+        json.append('[');
+        int start = -1, end = -1;
+        for (int i = 0; i < count; i++) {
+            int s = (int) (spans[i] >>> 32), e = (int) spans[i];
+            if (start >= 0 && s <= end) {
+                end = Math.max(end, e);
+                continue;
+            }
+            if (start >= 0) json.append(start).append(',').append(end - start).append(',');
+            start = s;
+            end = e;
+        }
+        if (start >= 0) json.append(start).append(',').append(end - start);
+        json.append(']');
+    }
+
+    private static int[][] byType(List<String> types, List<String> codes, Map<String, String> codeTypes) {
+        int[] counts = new int[types.size()];
+        int[] typeOf = new int[codes.size()];
+        for (int ord = 0; ord < codes.size(); ord++) {
+            String type = codeTypes.get(codes.get(ord));
+            typeOf[ord] = type == null ? -1 : types.indexOf(type);
+            if (typeOf[ord] >= 0) counts[typeOf[ord]]++;
+        }
+        int[][] out = new int[types.size()][];
+        for (int t = 0; t < out.length; t++) out[t] = new int[counts[t]];
+        int[] fill = new int[types.size()];
+        for (int ord = 0; ord < codes.size(); ord++) {
+            if (typeOf[ord] >= 0) out[typeOf[ord]][fill[typeOf[ord]]++] = ord;
+        }
+        return out;
+    }
+
+    /* Read-only labels of selected ordinals of a list */
+    private static final class OrdinalList extends AbstractList<String> implements RandomAccess {
+        private final List<String> labels;
+        private final int[] ordinals;
+
+        OrdinalList(List<String> labels, int[] ordinals) {
+            this.labels = labels;
+            this.ordinals = ordinals;
+        }
+
+        @Override
+        public String get(int index) { return labels.get(ordinals[index]); }
+
+        @Override
+        public int size() { return ordinals.length; }
+    }
+
+    private static Map<String, Integer> ordinals(List<String> labels) {
+        Map<String, Integer> map = new HashMap<>(labels.size() * 4 / 3 + 1);
+        for (int i = 0; i < labels.size(); i++) {
+            map.putIfAbsent(labels.get(i), i);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * The notification messages and everything derived from them: labels,
+     * quoted JSON fragments, ordinals sorted by label (for label lookups
+     * without a hash map), and the search indexes.
+     */
+    static final class Notifications {
+        final TextTable labels;
+        final TextTable json;
+        final IntBuffer byLabel;
+        final TrigramIndex index;
+        final FuzzyIndex terms;
+
+        Notifications(TextTable labels, TextTable json, IntBuffer byLabel, TrigramIndex index, FuzzyIndex terms) {
+            this.labels = labels;
+            this.json = json;
+            this.byLabel = byLabel;
+            this.index = index;
+            this.terms = terms;
+        }
+
+        static Notifications build(List<String> messages) {
+            List<String> fragments = new ArrayList<>(messages.size());
+            for (String m : messages) fragments.add(quoteJson(m));
+
+            Integer[] order = new Integer[messages.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            // stable: among equal labels the first ordinal comes first and wins lookups
+            Arrays.sort(order, (a, b) -> messages.get(a).compareTo(messages.get(b)));
+            int[] byLabel = new int[order.length];
+            for (int i = 0; i < order.length; i++) byLabel[i] = order[i];
+
+            TrigramIndex index = new TrigramIndex(messages);
+            return new Notifications(TextTable.of(messages), TextTable.of(fragments), IntBuffer.wrap(byLabel),
+                    index, new FuzzyIndex(index));
+        }
+
+        int size() { return labels.size(); }
+
+        /* First ordinal with this label, or -1 */
+        int ordinalOf(Object label) {
+            if (!(label instanceof String)) return -1;
+            String s = (String) label;
+            int lo = 0, hi = byLabel.limit();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (labels.compareTo(byLabel.get(mid), s) < 0) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo < byLabel.limit() && labels.compareTo(byLabel.get(lo), s) == 0 ? byLabel.get(lo) : -1;
+        }
+
+        /* Read-only label -> ordinal view backed by the binary search; one entry per distinct label */
+        final class OrdinalMap extends AbstractMap<String, Integer> {
+            /* Distinct labels, counted on first use */
+            private volatile int size = -1;
+
+            @Override
+            public int size() {
+                int n = size;
+                if (n < 0) {
+                    // byLabel is sorted: count the labels differing from the one before
+                    n = 0;
+                    for (int k = 0; k < byLabel.limit(); k++) {
+                        if (k == 0 || labels.compareTo(byLabel.get(k), labels.get(byLabel.get(k - 1))) != 0) n++;
+                    }
+                    size = n;
+                }
+                return n;
+            }
+
+            @Override
+            public boolean isEmpty() { return labels.size() == 0; }
+
+            @Override
+            public Integer get(Object label) {
+                int ord = ordinalOf(label);
+                return ord < 0 ? null : ord;
+            }
+
+            @Override
+            public boolean containsKey(Object label) { return ordinalOf(label) >= 0; }
+
+            @Override
+            public Set<Entry<String, Integer>> entrySet() {
+                Set<Entry<String, Integer>> entries = new LinkedHashSet<>();
+                for (int i = 0; i < labels.size(); i++) {
+                    String label = labels.get(i);
+                    if (ordinalOf(label) == i) entries.add(new SimpleImmutableEntry<>(label, i));
+                }
+                return Collections.unmodifiableSet(entries);
+            }
+        }
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** {@code s} as a double-quoted JSON string literal. */
+    static String quoteJson(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 8);
+        sb.append('"');
+        escapeJson(s, sb);
+        return sb.append('"').toString();
+    }
+
+    static void escapeJson(String s, StringBuilder sb) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '"': sb.append("\\\""); break;
+                case '/': sb.append("\\/"); break;
+                case '\b': sb.append("\\b"); break;
+                case '\f': sb.append("\\f"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c <= 0x1F || c >= 0x7F) {
+                        sb.append('\\').append('u')
+                          .append(HEX[(c >> 12) & 0xF]).append(HEX[(c >> 8) & 0xF])
+                          .append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+    }
+}
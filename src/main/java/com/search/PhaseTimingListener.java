@@ -0,0 +1,118 @@
+package com.search;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.faces.component.UIViewRoot;
+import javax.faces.context.FacesContext;
+import javax.faces.event.PhaseEvent;
+import javax.faces.event.PhaseId;
+import javax.faces.event.PhaseListener;
+import javax.faces.render.ResponseStateManager;
+
+/**
+ * Times every JSF lifecycle phase of each request and records the result
+ * per view and action, so a slow keystroke can be pinned on RESTORE_VIEW
+ * (server-side state), the bean action, or RENDER_RESPONSE.
+ *
+ * Each request records into the latency histograms (see {@link Metrics})
+ * {@code jsf <viewId> <action> <n>.<PHASE>} for every phase it ran, plus
+ * {@code ... total}. The action is the method expression that
+ * {@link ActionNameListener} saw fire, {@code postback} for a postback
+ * without one, or {@code initial} for the first GET of a view.
+ *
+ * Registered in faces-config.xml. Timings live in the request map, so
+ * nothing is left behind on pooled threads.
+ */
+public class PhaseTimingListener implements PhaseListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String TIMING_KEY = PhaseTimingListener.class.getName();
+
+    /* Distinct view/action pairs tracked; any more share one "other" entry */
+    private static final int MAX_KEYS = 256;
+    private static final String OTHER = "jsf (other)";
+
+    /* PhaseId ordinals run 1..6 (0 is ANY_PHASE) */
+    private static final int PHASES = 7;
+
+    /* Histograms per view/action: [ordinal] per phase, [0] for the whole request */
+    private static final ConcurrentMap<String, Histogram[]> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    @Override
+    public PhaseId getPhaseId() { return PhaseId.ANY_PHASE; }
+
+    @Override
+    public void beforePhase(PhaseEvent event) {
+        Map<String, Object> requestMap = event.getFacesContext().getExternalContext().getRequestMap();
+        long now = System.nanoTime();
+        long[] timing = (long[]) requestMap.get(TIMING_KEY);
+        if (timing == null) {
+            // [0] request start, [p] start of phase p, [PHASES + p] its duration
+            timing = new long[2 * PHASES];
+            timing[0] = now;
+            requestMap.put(TIMING_KEY, timing);
+        }
+        timing[event.getPhaseId().getOrdinal()] = now;
+    }
+
+    @Override
+    public void afterPhase(PhaseEvent event) {
+        FacesContext context = event.getFacesContext();
+        Map<String, Object> requestMap = context.getExternalContext().getRequestMap();
+        long[] timing = (long[]) requestMap.get(TIMING_KEY);
+        if (timing == null) return;
+
+        long now = System.nanoTime();
+        int phase = event.getPhaseId().getOrdinal();
+        timing[PHASES + phase] = now - timing[phase] + 1; // +1: a phase that ran is never 0
+
+        // the last phase of the request: render, or wherever the response was completed
+        if (event.getPhaseId() == PhaseId.RENDER_RESPONSE || context.getResponseComplete()) {
+            requestMap.remove(TIMING_KEY);
+            Histogram[] histograms = histograms(context, requestMap);
+            for (int p = 1; p < PHASES; p++) {
+                if (timing[PHASES + p] != 0) histograms[p].record(timing[PHASES + p] - 1);
+            }
+            histograms[0].record(now - timing[0]);
+        }
+    }
+
+    private static Histogram[] histograms(FacesContext context, Map<String, Object> requestMap) {
+        UIViewRoot root = context.getViewRoot();
+        String view = root == null || root.getViewId() == null ? "(none)" : root.getViewId();
+        Object action = requestMap.get(ActionNameListener.ACTION_KEY);
+        if (action == null) {
+            action = context.getExternalContext().getRequestParameterMap()
+                    .containsKey(ResponseStateManager.VIEW_STATE_PARAM) ? "postback" : "initial";
+        }
+
+        String key = "jsf " + view + " " + action;
+        Histogram[] histograms = HISTOGRAMS.get(key);
+        if (histograms == null) {
+            if (HISTOGRAMS.size() >= MAX_KEYS) key = OTHER;
+            histograms = HISTOGRAMS.get(key);
+            if (histograms == null) {
+                Histogram[] created = new Histogram[PHASES];
+                created[0] = Metrics.latency(key + " total");
+                for (Object value : PhaseId.VALUES) {
+                    PhaseId id = (PhaseId) value;
+                    int p = id.getOrdinal();
+                    if (p > 0) created[p] = Metrics.latency(key + " " + p + "." + name(id));
+                }
+                histograms = HISTOGRAMS.putIfAbsent(key, created);
+                if (histograms == null) histograms = created;
+            }
+        }
+        return histograms;
+    }
+
+    /* PhaseId.toString() is "RESTORE_VIEW 1"; keep the name */
+    private static String name(PhaseId id) {
+        String s = id.toString();
+        int space = s.indexOf(' ');
+        return space < 0 ? s : s.substring(0, space);
+    }
+}
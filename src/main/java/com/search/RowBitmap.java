@@ -0,0 +1,508 @@
+package com.search;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable compressed bitmap of row numbers, after Roaring bitmaps. Values
+ * are split by their high 16 bits into chunks, and each chunk keeps its low
+ * halves in whichever container is smallest for it: a sorted array (sparse
+ * chunks), a 65536-bit bitmap (dense ones) or a list of runs (consecutive
+ * rows, such as all rows when nothing is filtered).
+ *
+ * Union and intersection work chunk by chunk; a container that needs no
+ * combining is shared, not copied. Running counts per chunk make rank and
+ * select cheap, so a page at any offset is found without walking the rows
+ * before it.
+ */
+final class RowBitmap {
+
+    static final RowBitmap EMPTY = new RowBitmap(new char[0], new Container[0], 0);
+
+    /* Arrays hold at most this many values; above it a bitmap (8 KB) is never larger */
+    private static final int ARRAY_MAX = 4096;
+
+    /* 64-bit words per bitmap container */
+    private static final int WORDS = 1024;
+
+    /* Chunk keys (high 16 bits), ascending, and their non-empty containers */
+    private final char[] keys;
+    private final Container[] containers;
+
+    /* ranks[i]: values in the chunks before i; ranks[count] is the cardinality */
+    private final int[] ranks;
+
+    private RowBitmap(char[] keys, Container[] containers, int count) {
+        this.keys = count == keys.length ? keys : Arrays.copyOf(keys, count);
+        this.containers = count == containers.length ? containers : Arrays.copyOf(containers, count);
+        this.ranks = new int[count + 1];
+        for (int i = 0; i < count; i++) ranks[i + 1] = ranks[i] + containers[i].cardinality();
+    }
+
+    /** Bitmap of {@code values[from, to)}, which must be ascending and distinct. */
+    static RowBitmap of(int[] values, int from, int to) {
+        char[] keys = new char[chunks(values, from, to)];
+        Container[] containers = new Container[keys.length];
+        int n = 0;
+        for (int i = from; i < to; ) {
+            int high = values[i] >>> 16;
+            int j = i + 1;
+            while (j < to && values[j] >>> 16 == high) j++;
+            keys[n] = (char) high;
+            containers[n++] = Container.of(values, i, j);
+            i = j;
+        }
+        return new RowBitmap(keys, containers, n);
+    }
+
+    /** All values in {@code [0, n)}. */
+    static RowBitmap range(int n) {
+        int count = (n + 0xFFFF) >>> 16;
+        char[] keys = new char[count];
+        Container[] containers = new Container[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = (char) i;
+            int length = Math.min(0x10000, n - (i << 16));
+            containers[i] = new RunContainer(new char[] { 0, (char) (length - 1) }, length);
+        }
+        return new RowBitmap(keys, containers, count);
+    }
+
+    private static int chunks(int[] values, int from, int to) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            if (i == from || values[i] >>> 16 != values[i - 1] >>> 16) n++;
+        }
+        return n;
+    }
+
+    int cardinality() { return ranks[containers.length]; }
+
+    boolean isEmpty() { return containers.length == 0; }
+
+    boolean contains(int value) {
+        int i = Arrays.binarySearch(keys, (char) (value >>> 16));
+        return value >= 0 && i >= 0 && containers[i].contains(value & 0xFFFF);
+    }
+
+    /** Smallest value at or above {@code from}, or -1 if there is none. */
+    int next(int from) {
+        if (from < 0) from = 0;
+        int i = Arrays.binarySearch(keys, (char) (from >>> 16));
+        if (i >= 0) {
+            int low = containers[i].next(from & 0xFFFF);
+            if (low >= 0) return keys[i] << 16 | low;
+            i++;
+        } else {
+            i = -i - 1;
+        }
+        return i < containers.length ? keys[i] << 16 | containers[i].next(0) : -1;
+    }
+
+    /** Number of values below {@code value}. */
+    int rank(int value) {
+        if (value <= 0) return 0;
+        int i = Arrays.binarySearch(keys, (char) (value >>> 16));
+        if (i < 0) return ranks[-i - 1];
+        return ranks[i] + containers[i].rank(value & 0xFFFF);
+    }
+
+    /** The value with {@code rank} values below it; {@code rank} must be below the cardinality. */
+    int select(int rank) {
+        int lo = 0, hi = containers.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (ranks[mid] <= rank) lo = mid;
+            else hi = mid - 1;
+        }
+        return keys[lo] << 16 | containers[lo].select(rank - ranks[lo]);
+    }
+
+    /** Values in any of the bitmaps. */
+    static RowBitmap or(List<RowBitmap> bitmaps) {
+        if (bitmaps.isEmpty()) return EMPTY;
+        if (bitmaps.size() == 1) return bitmaps.get(0);
+        int total = 0;
+        for (RowBitmap b : bitmaps) total += b.keys.length;
+        char[] keys = new char[Math.min(total, 0x10000)];
+        Container[] containers = new Container[keys.length];
+        int[] pos = new int[bitmaps.size()];
+        long[] words = null;
+        int n = 0;
+        while (true) {
+            int key = Integer.MAX_VALUE, found = 0;
+            Container single = null;
+            for (int b = 0; b < pos.length; b++) {
+                RowBitmap bitmap = bitmaps.get(b);
+                if (pos[b] >= bitmap.keys.length) continue;
+                int k = bitmap.keys[pos[b]];
+                if (k < key) {
+                    key = k;
+                    found = 1;
+                    single = bitmap.containers[pos[b]];
+                } else if (k == key) {
+                    found++;
+                }
+            }
+            if (found == 0) break;
+            Container out = single;
+            if (found > 1) {
+                if (words == null) words = new long[WORDS];
+                else Arrays.fill(words, 0L);
+                for (int b = 0; b < pos.length; b++) {
+                    RowBitmap bitmap = bitmaps.get(b);
+                    if (pos[b] < bitmap.keys.length && bitmap.keys[pos[b]] == key) {
+                        bitmap.containers[pos[b]].orInto(words);
+                    }
+                }
+                out = Container.of(words);
+            }
+            for (int b = 0; b < pos.length; b++) {
+                RowBitmap bitmap = bitmaps.get(b);
+                if (pos[b] < bitmap.keys.length && bitmap.keys[pos[b]] == key) pos[b]++;
+            }
+            keys[n] = (char) key;
+            containers[n++] = out;
+        }
+        return new RowBitmap(keys, containers, n);
+    }
+
+    /** Values in all of the bitmaps; smallest first is cheapest, so they are taken in that order. */
+    static RowBitmap and(List<RowBitmap> bitmaps) {
+        if (bitmaps.isEmpty()) throw new IllegalArgumentException("Intersection of no bitmaps");
+        if (bitmaps.size() == 1) return bitmaps.get(0);
+        RowBitmap[] sorted = bitmaps.toArray(new RowBitmap[0]);
+        Arrays.sort(sorted, Comparator.comparingInt(RowBitmap::cardinality));
+
+        RowBitmap first = sorted[0];
+        char[] keys = new char[first.keys.length];
+        Container[] containers = new Container[keys.length];
+        Container[] others = new Container[sorted.length - 1];
+        long[] words = null;
+        int n = 0;
+        chunks:
+        for (int i = 0; i < first.keys.length; i++) {
+            for (int b = 1; b < sorted.length; b++) {
+                int at = Arrays.binarySearch(sorted[b].keys, first.keys[i]);
+                if (at < 0) continue chunks;
+                others[b - 1] = sorted[b].containers[at];
+            }
+            Container c = first.containers[i];
+            Container out;
+            if (c instanceof ArrayContainer) {
+                out = ((ArrayContainer) c).retainAll(others);
+            } else {
+                if (words == null) words = new long[WORDS];
+                else Arrays.fill(words, 0L);
+                c.orInto(words);
+                for (Container other : others) other.andInto(words);
+                out = Container.of(words);
+            }
+            if (out != null) {
+                keys[n] = first.keys[i];
+                containers[n++] = out;
+            }
+        }
+        return new RowBitmap(keys, containers, n);
+    }
+
+    /* ===== Containers: the low 16 bits of one chunk's values, never empty ===== */
+
+    private abstract static class Container {
+        abstract int cardinality();
+        abstract boolean contains(int low);
+        /* Smallest value >= low, or -1 */
+        abstract int next(int low);
+        /* Values below low */
+        abstract int rank(int low);
+        abstract int select(int rank);
+        abstract void orInto(long[] words);
+        abstract void andInto(long[] words);
+
+        /* Smallest container for ascending, distinct values[from, to) of one chunk */
+        static Container of(int[] values, int from, int to) {
+            int n = to - from, runs = 1;
+            for (int i = from + 1; i < to; i++) {
+                if (values[i] != values[i - 1] + 1) runs++;
+            }
+            if (4 * runs < Math.min(2 * n, 8 * WORDS)) {
+                char[] out = new char[2 * runs];
+                int r = 0;
+                for (int i = from; i < to; ) {
+                    int j = i + 1;
+                    while (j < to && values[j] == values[j - 1] + 1) j++;
+                    out[r++] = (char) values[i];
+                    out[r++] = (char) (j - i - 1);
+                    i = j;
+                }
+                return new RunContainer(out, n);
+            }
+            if (n <= ARRAY_MAX) {
+                char[] out = new char[n];
+                for (int i = 0; i < n; i++) out[i] = (char) values[from + i];
+                return new ArrayContainer(out);
+            }
+            long[] words = new long[WORDS];
+            for (int i = from; i < to; i++) words[(values[i] & 0xFFFF) >>> 6] |= 1L << values[i];
+            return new BitmapContainer(words, n);
+        }
+
+        /* Smallest container for a bitmap, or null if it is empty; words is not kept */
+        static Container of(long[] words) {
+            int n = 0, runs = 0;
+            long previous = 0L;
+            for (long w : words) {
+                n += Long.bitCount(w);
+                runs += Long.bitCount(w & ~(w << 1 | previous >>> 63));
+                previous = w;
+            }
+            if (n == 0) return null;
+            if (4 * runs < Math.min(2 * n, 8 * WORDS)) {
+                char[] out = new char[2 * runs];
+                int r = 0;
+                for (int start = nextSet(words, 0); start >= 0; ) {
+                    int end = nextClear(words, start);
+                    out[r++] = (char) start;
+                    out[r++] = (char) (end - start - 1);
+                    start = end < 0x10000 ? nextSet(words, end) : -1;
+                }
+                return new RunContainer(out, n);
+            }
+            if (n <= ARRAY_MAX) {
+                char[] out = new char[n];
+                int i = 0;
+                for (int w = 0; w < WORDS; w++) {
+                    for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+                        out[i++] = (char) (w << 6 | Long.numberOfTrailingZeros(bits));
+                    }
+                }
+                return new ArrayContainer(out);
+            }
+            return new BitmapContainer(words.clone(), n);
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        private final char[] values;
+
+        ArrayContainer(char[] values) { this.values = values; }
+
+        @Override int cardinality() { return values.length; }
+
+        @Override boolean contains(int low) { return Arrays.binarySearch(values, (char) low) >= 0; }
+
+        @Override
+        int next(int low) {
+            int i = rank(low);
+            return i < values.length ? values[i] : -1;
+        }
+
+        @Override
+        int rank(int low) {
+            int i = Arrays.binarySearch(values, (char) low);
+            return i >= 0 ? i : -i - 1;
+        }
+
+        @Override int select(int rank) { return values[rank]; }
+
+        @Override
+        void orInto(long[] words) {
+            for (char v : values) words[v >>> 6] |= 1L << v;
+        }
+
+        @Override
+        void andInto(long[] words) {
+            long[] mine = new long[WORDS];
+            orInto(mine);
+            for (int w = 0; w < WORDS; w++) words[w] &= mine[w];
+        }
+
+        /* The values also in every other container, or null if none is */
+        Container retainAll(Container[] others) {
+            char[] out = new char[values.length];
+            int n = 0;
+            values:
+            for (char v : values) {
+                for (Container other : others) {
+                    if (!other.contains(v)) continue values;
+                }
+                out[n++] = v;
+            }
+            return n == 0 ? null : new ArrayContainer(n == out.length ? values : Arrays.copyOf(out, n));
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private final int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override int cardinality() { return cardinality; }
+
+        @Override boolean contains(int low) { return (words[low >>> 6] & 1L << low) != 0; }
+
+        @Override int next(int low) { return nextSet(words, low); }
+
+        @Override
+        int rank(int low) {
+            int w = low >>> 6, n = 0;
+            for (int i = 0; i < w; i++) n += Long.bitCount(words[i]);
+            return n + Long.bitCount(words[w] & ((1L << low) - 1));
+        }
+
+        @Override
+        int select(int rank) {
+            for (int w = 0; ; w++) {
+                int bits = Long.bitCount(words[w]);
+                if (rank < bits) {
+                    long word = words[w];
+                    for (int k = 0; k < rank; k++) word &= word - 1;
+                    return w << 6 | Long.numberOfTrailingZeros(word);
+                }
+                rank -= bits;
+            }
+        }
+
+        @Override
+        void orInto(long[] out) {
+            for (int w = 0; w < WORDS; w++) out[w] |= words[w];
+        }
+
+        @Override
+        void andInto(long[] out) {
+            for (int w = 0; w < WORDS; w++) out[w] &= words[w];
+        }
+    }
+
+    /* Runs as (start, length - 1) pairs, ascending and not adjacent */
+    private static final class RunContainer extends Container {
+        private final char[] runs;
+        private final int cardinality;
+
+        RunContainer(char[] runs, int cardinality) {
+            this.runs = runs;
+            this.cardinality = cardinality;
+        }
+
+        @Override int cardinality() { return cardinality; }
+
+        /* Index of the last run starting at or before low, or -1 */
+        private int run(int low) {
+            int lo = 0, hi = runs.length / 2 - 1, found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (runs[2 * mid] <= low) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        @Override
+        boolean contains(int low) {
+            int r = run(low);
+            return r >= 0 && low <= runs[2 * r] + runs[2 * r + 1];
+        }
+
+        @Override
+        int next(int low) {
+            int r = run(low);
+            if (r >= 0 && low <= runs[2 * r] + runs[2 * r + 1]) return low;
+            return 2 * (r + 1) < runs.length ? runs[2 * (r + 1)] : -1;
+        }
+
+        @Override
+        int rank(int low) {
+            int n = 0;
+            for (int i = 0; i < runs.length && runs[i] < low; i += 2) {
+                n += Math.min(runs[i + 1] + 1, low - runs[i]);
+            }
+            return n;
+        }
+
+        @Override
+        int select(int rank) {
+            for (int i = 0; ; i += 2) {
+                int length = runs[i + 1] + 1;
+                if (rank < length) return runs[i] + rank;
+                rank -= length;
+            }
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < runs.length; i += 2) setRange(words, runs[i], runs[i] + runs[i + 1] + 1);
+        }
+
+        @Override
+        void andInto(long[] words) {
+            int end = 0;
+            for (int i = 0; i < runs.length; i += 2) {
+                clearRange(words, end, runs[i]);
+                end = runs[i] + runs[i + 1] + 1;
+            }
+            clearRange(words, end, 0x10000);
+        }
+    }
+
+    /* ===== Word helpers over one 65536-bit chunk ===== */
+
+    /* First set bit at or after from, or -1 */
+    private static int nextSet(long[] words, int from) {
+        if (from >= 0x10000) return -1;
+        int w = from >>> 6;
+        long word = words[w] & -1L << from;
+        while (word == 0) {
+            if (++w == WORDS) return -1;
+            word = words[w];
+        }
+        return w << 6 | Long.numberOfTrailingZeros(word);
+    }
+
+    /* First clear bit at or after from, or 0x10000 */
+    private static int nextClear(long[] words, int from) {
+        int w = from >>> 6;
+        long word = ~words[w] & -1L << from;
+        while (word == 0) {
+            if (++w == WORDS) return 0x10000;
+            word = ~words[w];
+        }
+        return w << 6 | Long.numberOfTrailingZeros(word);
+    }
+
+    /* Sets bits [from, to) */
+    private static void setRange(long[] words, int from, int to) {
+        if (from >= to) return;
+        int first = from >>> 6, last = (to - 1) >>> 6;
+        long firstMask = -1L << from, lastMask = -1L >>> -to;
+        if (first == last) {
+            words[first] |= firstMask & lastMask;
+            return;
+        }
+        words[first] |= firstMask;
+        for (int w = first + 1; w < last; w++) words[w] = -1L;
+        words[last] |= lastMask;
+    }
+
+    /* Clears bits [from, to) */
+    private static void clearRange(long[] words, int from, int to) {
+        if (from >= to) return;
+        int first = from >>> 6, last = (to - 1) >>> 6;
+        long firstMask = -1L << from, lastMask = -1L >>> -to;
+        if (first == last) {
+            words[first] &= ~(firstMask & lastMask);
+            return;
+        }
+        words[first] &= ~firstMask;
+        for (int w = first + 1; w < last; w++) words[w] = 0L;
+        words[last] &= ~lastMask;
+    }
+}
@@ -0,0 +1,79 @@
+package com.search;
+
+import java.io.Serializable;
+
+import javax.servlet.http.HttpSession;
+
+/**
+ * Per-session memory of the last suggestion query and its matches.
+ *
+ * Users type one character at a time, so a new query usually extends the
+ * previous one and its matches are a subset of the previous matches. In that
+ * case only the previous candidates are re-checked; on backspace, an edit in
+ * the middle, a catalog reload, or a query short enough to be a single
+ * posting-list lookup, the index is used instead.
+ *
+ * The remembered matches are a cache and are not serialized with the session.
+ * They are kept as one immutable snapshot in a volatile field, so concurrent
+ * requests from the same session never block each other; when two race, the
+ * later write simply wins.
+ *
+ * Each session gets exactly one, installed when the session is created
+ * ({@link SearchContextListener}); {@link #of} is the one way to reach it.
+ */
+public class SearchContext implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Session attribute shared by the JSF bean and {@link SuggestionServlet}. */
+    public static final String SESSION_KEY = "com.search.SearchContext";
+
+    private transient volatile Snapshot last;
+
+    /**
+     * The session's search context. Sessions that predate the listener
+     * (e.g. restored from disk without one) get theirs here, once: the
+     * check and the install happen under the session's lock.
+     */
+    public static SearchContext of(HttpSession session) {
+        SearchContext context = (SearchContext) session.getAttribute(SESSION_KEY);
+        if (context != null) return context;
+        synchronized (session) {
+            context = (SearchContext) session.getAttribute(SESSION_KEY);
+            if (context == null) {
+                context = new SearchContext();
+                session.setAttribute(SESSION_KEY, context);
+            }
+            return context;
+        }
+    }
+
+    /** Ordinals (ascending) of notification messages matching the normalized query. */
+    public int[] matches(NotificationCatalog catalog, String query) {
+        TrigramIndex index = catalog.getNotificationIndex();
+        Snapshot previous = last;
+        int[] matches;
+        if (previous != null && previous.version == catalog.getVersion()
+                && query.length() > TrigramIndex.exactGramLength()
+                && query.startsWith(previous.query)) {
+            matches = query.length() == previous.query.length()
+                    ? previous.matches : index.filter(previous.matches, query);
+        } else {
+            matches = index.search(query);
+        }
+        last = new Snapshot(catalog.getVersion(), query, matches);
+        return matches;
+    }
+
+    private static final class Snapshot {
+        final long version;
+        final String query;
+        final int[] matches;
+
+        Snapshot(long version, String query, int[] matches) {
+            this.version = version;
+            this.query = query;
+            this.matches = matches;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.search;
+
+import javax.servlet.http.HttpSessionEvent;
+import javax.servlet.http.HttpSessionListener;
+
+/**
+ * Installs each new session's {@link SearchContext} before any request can
+ * use the session, so overlapping suggestion requests of one session never
+ * race to create their own (and lose one's narrowing snapshot).
+ */
+public class SearchContextListener implements HttpSessionListener {
+
+    @Override
+    public void sessionCreated(HttpSessionEvent event) {
+        event.getSession().setAttribute(SearchContext.SESSION_KEY, new SearchContext());
+    }
+
+    @Override
+    public void sessionDestroyed(HttpSessionEvent event) { }
+}
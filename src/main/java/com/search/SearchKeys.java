@@ -0,0 +1,89 @@
+package com.search;
+
+import java.text.Normalizer;
+
+/**
+ * Normalization shared by the search keys and the queries matched against
+ * them: Unicode NFKD (so compatibility forms such as full-width letters
+ * and ligatures fold to plain ones), combining marks removed
+ * ("café" matches "cafe"), and locale-independent case folding (a Turkish
+ * default locale does not turn "I" into a dotless "ı").
+ *
+ * Keys are normalized once per catalog entry at build time. Plain lowercase
+ * ASCII, the usual query, is returned as is without allocating.
+ */
+public final class SearchKeys {
+
+    private SearchKeys() { }
+
+    public static String normalize(String s) {
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (c >= 0x80 || (c >= 'A' && c <= 'Z')) break;
+            i++;
+        }
+        if (i == n) return s;
+
+        String decomposed = Normalizer.normalize(s, Normalizer.Form.NFKD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+        for (int k = 0; k < decomposed.length(); ) {
+            int cp = decomposed.codePointAt(k);
+            k += Character.charCount(cp);
+            if (isMark(cp)) continue;
+            out.appendCodePoint(fold(cp));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Maps positions in {@code normalize(s)} back to {@code s}: normalized
+     * char {@code k} comes from {@code s[map[2k], map[2k+1])}, the code point
+     * it was decomposed or folded from. Returns null when positions are the
+     * same in both (ASCII text), and an empty array in the rare case where
+     * {@code s} does not normalize code point by code point.
+     */
+    static int[] sourceMap(String s) {
+        int n = s.length();
+        int i = 0;
+        while (i < n && s.charAt(i) < 0x80) i++;
+        if (i == n) return null;
+
+        String normalized = normalize(s);
+        int[] map = new int[2 * normalized.length()];
+        int k = 0;
+        for (int p = 0; p < n; ) {
+            int cp = s.codePointAt(p);
+            int end = p + Character.charCount(cp);
+            String part = normalize(s.substring(p, end));
+            if (k + part.length() > normalized.length()
+                    || !normalized.regionMatches(k, part, 0, part.length())) {
+                return new int[0];
+            }
+            for (int c = 0; c < part.length(); c++, k++) {
+                map[2 * k] = p;
+                map[2 * k + 1] = end;
+            }
+            p = end;
+        }
+        return k == normalized.length() ? map : new int[0];
+    }
+
+    /* Simple case folding: the lowercase of the uppercase, per code point */
+    static int fold(int cp) {
+        if (cp < 0x80) return cp >= 'A' && cp <= 'Z' ? cp + ('a' - 'A') : cp;
+        return Character.toLowerCase(Character.toUpperCase(cp));
+    }
+
+    static boolean isMark(int cp) {
+        switch (Character.getType(cp)) {
+            case Character.NON_SPACING_MARK:
+            case Character.COMBINING_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
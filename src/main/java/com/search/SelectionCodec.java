@@ -0,0 +1,133 @@
+package com.search;
+
+import java.util.BitSet;
+
+/**
+ * Compact, versioned wire format for a set of catalog ordinals, used by the
+ * selectedEventCodes / selectedPickupTypes hidden fields instead of joined
+ * labels (which broke on labels containing commas).
+ *
+ * Two encodings, the client sends whichever is shorter:
+ * <ul>
+ *   <li>{@code 1r:} runs: varints {@code gap, length, gap, length, ...}
+ *       where each run covers {@code [prevEnd + gap, prevEnd + gap + length)};</li>
+ *   <li>{@code 1b:} bitmask: char {@code i} holds ordinals {@code 6i..6i+5}.</li>
+ * </ul>
+ * Every char is one symbol of a URL-safe 64-char alphabet. In varints a
+ * symbol carries 5 data bits (low first) plus a continuation bit (32).
+ *
+ * Decoding is a single pass over the chars straight into a {@link BitSet},
+ * with no per-label strings or intermediate arrays.
+ */
+public final class SelectionCodec {
+
+    public static final String RUNS_PREFIX = "1r:";
+    public static final String BITMASK_PREFIX = "1b:";
+
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        java.util.Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) VALUES[ALPHABET[i]] = (byte) i;
+    }
+
+    private SelectionCodec() { }
+
+    /** True if {@code value} is in one of the compact formats (else: legacy joined labels). */
+    public static boolean isEncoded(String value) {
+        return value != null && (value.startsWith(RUNS_PREFIX) || value.startsWith(BITMASK_PREFIX));
+    }
+
+    /**
+     * Decodes {@code value} into a new BitSet, dropping ordinals at or above
+     * {@code limit}. Returns null if the value is malformed.
+     */
+    public static BitSet decode(String value, int limit) {
+        BitSet bits = new BitSet(limit);
+        int n = value.length();
+
+        if (value.startsWith(BITMASK_PREFIX)) {
+            for (int i = BITMASK_PREFIX.length(), base = 0; i < n; i++, base += 6) {
+                int v = symbol(value.charAt(i));
+                if (v < 0) return null;
+                for (int b = 0; b < 6 && v != 0; b++, v >>>= 1) {
+                    if ((v & 1) != 0 && base + b < limit) bits.set(base + b);
+                }
+            }
+            return bits;
+        }
+
+        if (!value.startsWith(RUNS_PREFIX)) return null;
+        long end = 0;
+        boolean gap = true;
+        long number = 0;
+        int shift = 0;
+        for (int i = RUNS_PREFIX.length(); i < n; i++) {
+            int v = symbol(value.charAt(i));
+            if (v < 0 || shift > 30) return null;
+            number |= (long) (v & 31) << shift;
+            if ((v & 32) != 0) {
+                shift += 5;
+                continue;
+            }
+            if (gap) {
+                end += number;
+            } else {
+                long from = end;
+                end += number;
+                if (from < limit) bits.set((int) from, (int) Math.min(end, limit));
+            }
+            gap = !gap;
+            number = 0;
+            shift = 0;
+        }
+        // a trailing gap without its length, or a cut-off varint, is malformed
+        return gap && shift == 0 ? bits : null;
+    }
+
+    /** Shorter of the two encodings of {@code bits}. */
+    public static String encode(BitSet bits) {
+        String runs = encodeRuns(bits);
+        int bitmaskLength = BITMASK_PREFIX.length() + (bits.length() + 5) / 6;
+        return runs.length() <= bitmaskLength ? runs : encodeBitmask(bits);
+    }
+
+    static String encodeRuns(BitSet bits) {
+        StringBuilder sb = new StringBuilder(RUNS_PREFIX);
+        int end = 0;
+        for (int from = bits.nextSetBit(0); from >= 0; from = bits.nextSetBit(end)) {
+            int to = bits.nextClearBit(from);
+            varint(sb, from - end);
+            varint(sb, to - from);
+            end = to;
+        }
+        return sb.toString();
+    }
+
+    static String encodeBitmask(BitSet bits) {
+        int symbols = (bits.length() + 5) / 6;
+        StringBuilder sb = new StringBuilder(BITMASK_PREFIX.length() + symbols).append(BITMASK_PREFIX);
+        for (int i = 0; i < symbols; i++) {
+            int v = 0;
+            for (int b = 0; b < 6; b++) {
+                if (bits.get(6 * i + b)) v |= 1 << b;
+            }
+            sb.append(ALPHABET[v]);
+        }
+        return sb.toString();
+    }
+
+    private static void varint(StringBuilder sb, int value) {
+        while (value >= 32) {
+            sb.append(ALPHABET[32 | (value & 31)]);
+            value >>>= 5;
+        }
+        sb.append(ALPHABET[value]);
+    }
+
+    private static int symbol(char c) {
+        return c < 128 ? VALUES[c] : -1;
+    }
+}
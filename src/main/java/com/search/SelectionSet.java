@@ -0,0 +1,411 @@
+package com.search;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-session selection over one {@link CatalogSection}, stored as a bitset
+ * indexed by catalog ordinal.
+ *
+ * It is also a {@code Map<String, Boolean>} view (label -> selected) so the
+ * EL bindings such as {@code selectedEventCodesMap[code]} keep working. The
+ * labels themselves are read from the shared catalog and never copied into
+ * the session (except when the session itself is serialized).
+ *
+ * The bits live in an {@link AtomicLongArray} and every change is a
+ * compare-and-set on the affected words, so overlapping requests from one
+ * session (a suggestion fetch racing a toggle, or two toggles) never lose
+ * updates or see a torn word, without any lock. Changes spanning several
+ * words are atomic per word, not as a whole.
+ *
+ * Ordinals belong to one catalog version. When a reload publishes a new
+ * catalog, the first access afterwards remaps the selection by label onto
+ * the new ordinals (labels that disappeared are dropped); a change that
+ * races the remapping is applied again to the new bits.
+ *
+ * A change counter ({@link #changes}) moves with every change and remapping,
+ * so readers that derive state from the selection can tell it is unchanged
+ * without copying the bits.
+ */
+public class SelectionSet extends AbstractMap<String, Boolean> implements Serializable {
+
+    private static final long serialVersionUID = 3L;
+
+    private final CatalogSection section;
+    private transient AtomicReference<Bound> state;
+
+    /* Bumped after every change to the bits and every remapping onto a new catalog */
+    private transient AtomicLong changes;
+
+    public SelectionSet(CatalogSection section) {
+        this.section = section;
+        this.changes = new AtomicLong();
+        this.state = new AtomicReference<>(new Bound(catalog(), section, changes));
+    }
+
+    public CatalogSection getSection() { return section; }
+
+    /* ===== Ordinal access (ordinals of the current catalog) ===== */
+    public boolean isSelected(int ordinal) { return bound().isSelected(ordinal); }
+
+    /** Selects or deselects one ordinal; returns its previous state. */
+    public boolean set(int ordinal, boolean selected) { return set(catalog(), ordinal, selected); }
+
+    public void clearSelection() { replace(catalog(), new BitSet()); }
+
+    public int selectedCount() { return bound().toBitSet().cardinality(); }
+
+    /** Replaces the whole selection; ordinals outside the section are dropped. */
+    public void replace(BitSet selection) { replace(catalog(), selection); }
+
+    /** Snapshot of the selection as a BitSet. */
+    public BitSet toBitSet() { return bound().toBitSet(); }
+
+    /** The selection and the catalog its ordinals refer to, read together. */
+    Snapshot snapshot() {
+        Bound b = bound();
+        return new Snapshot(section, b.catalog, b.toBitSet());
+    }
+
+    /**
+     * Change counter: if it reads the same before one {@link #toBitSet} and
+     * again later, the selection has not changed in between (it may move
+     * without a change, e.g. when a selection is set to what it was).
+     */
+    public long changes() {
+        bound();
+        return changes.get();
+    }
+
+    /**
+     * Sets the selection from a hidden-field value: the compact
+     * {@link SelectionCodec} format, whose ordinals refer to {@code rendered}
+     * (the catalog the page was rendered from), or legacy comma-joined
+     * labels. A malformed compact value clears the selection; one rendered
+     * from a catalog that is no longer known ({@code rendered == null}) is
+     * ignored.
+     */
+    public void setFromWire(String value, NotificationCatalog rendered) {
+        setFromWire(value, rendered, null);
+    }
+
+    /**
+     * As {@link #setFromWire(String, NotificationCatalog)} for a page that
+     * listed only part of the section: {@code scope} holds the ordinals it
+     * showed (of {@code rendered}, or of the current catalog if that is
+     * null), or is null for all. Only those are replaced; selections made
+     * while another part was shown are kept.
+     */
+    public void setFromWire(String value, NotificationCatalog rendered, int[] scope) {
+        NotificationCatalog of;
+        BitSet bits;
+        if (SelectionCodec.isEncoded(value)) {
+            if (rendered == null) return;
+            of = rendered;
+            bits = SelectionCodec.decode(value, rendered.labels(section).size());
+            if (bits == null) bits = new BitSet();
+        } else {
+            of = catalog();
+            bits = new BitSet();
+            if (value != null && !value.trim().isEmpty()) {
+                for (String label : value.split(",")) {
+                    int ord = of.ordinalOf(section, label.trim());
+                    if (ord >= 0) bits.set(ord);
+                }
+            }
+        }
+        if (scope == null) {
+            replace(of, bits);
+            return;
+        }
+
+        BitSet shown = new BitSet();
+        for (int ord : scope) shown.set(ord);
+        NotificationCatalog scopeOf = rendered != null ? rendered : catalog();
+        if (scopeOf != of) shown = remap(shown, scopeOf, of);
+        bits.and(shown);
+        apply(of, bits, shown, false);
+    }
+
+    /**
+     * Applies a batch of changes encoded as repeated
+     * {@code ('+'|'-') <length> ':' <label>} (length in UTF-16 chars, so
+     * labels may contain any character). The whole batch is parsed before
+     * anything changes: a malformed batch is rejected and leaves the
+     * selection untouched. Labels not in the catalog are ignored.
+     *
+     * @return false if the batch was malformed
+     */
+    public boolean applyChanges(String encoded) {
+        NotificationCatalog catalog = catalog();
+        BitSet on = new BitSet();
+        BitSet off = new BitSet();
+
+        int pos = 0, n = encoded.length();
+        while (pos < n) {
+            char sign = encoded.charAt(pos++);
+            if (sign != '+' && sign != '-') return false;
+
+            int colon = encoded.indexOf(':', pos);
+            if (colon <= pos || colon - pos > 9) return false;
+            int len = 0;
+            for (int i = pos; i < colon; i++) {
+                char d = encoded.charAt(i);
+                if (d < '0' || d > '9') return false;
+                len = len * 10 + (d - '0');
+            }
+            int end = colon + 1 + len;
+            if (end > n) return false;
+
+            int ord = catalog.ordinalOf(section, encoded.substring(colon + 1, end));
+            if (ord >= 0) {
+                // later changes to the same item win
+                (sign == '+' ? on : off).set(ord);
+                (sign == '+' ? off : on).clear(ord);
+            }
+            pos = end;
+        }
+
+        apply(catalog, on, off, false);
+        return true;
+    }
+
+    /** Selected labels in catalog order. */
+    public List<String> selectedLabels() {
+        Bound b = bound();
+        List<String> labels = b.catalog.labels(section);
+        BitSet bits = b.toBitSet();
+        List<String> out = new ArrayList<>(bits.cardinality());
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            out.add(labels.get(i));
+        }
+        return out;
+    }
+
+    /** Selected labels joined in catalog order, or "" if none. */
+    public String join(String separator) {
+        Bound b = bound();
+        List<String> labels = b.catalog.labels(section);
+        BitSet bits = b.toBitSet();
+        StringBuilder sb = new StringBuilder();
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            if (sb.length() > 0) sb.append(separator);
+            sb.append(labels.get(i));
+        }
+        return sb.toString();
+    }
+
+    /* ===== Map view (EL bindings) ===== */
+    @Override
+    public Boolean get(Object label) {
+        Bound b = bound();
+        int ord = b.catalog.ordinalOf(section, label);
+        return ord < 0 ? null : b.isSelected(ord);
+    }
+
+    @Override
+    public Boolean put(String label, Boolean selected) {
+        NotificationCatalog catalog = catalog();
+        int ord = catalog.ordinalOf(section, label);
+        return ord < 0 ? null : set(catalog, ord, Boolean.TRUE.equals(selected));
+    }
+
+    @Override
+    public boolean containsKey(Object label) {
+        return catalog().ordinalOf(section, label) >= 0;
+    }
+
+    @Override
+    public int size() { return catalog().labels(section).size(); }
+
+    @Override
+    public Set<Entry<String, Boolean>> entrySet() {
+        final Bound b = bound();
+        final List<String> labels = b.catalog.labels(section);
+        return new AbstractSet<Entry<String, Boolean>>() {
+            @Override
+            public int size() { return labels.size(); }
+
+            @Override
+            public Iterator<Entry<String, Boolean>> iterator() {
+                return new Iterator<Entry<String, Boolean>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() { return next < labels.size(); }
+
+                    @Override
+                    public Entry<String, Boolean> next() {
+                        if (next >= labels.size()) throw new NoSuchElementException();
+                        final int ord = next++;
+                        return new SimpleEntry<String, Boolean>(labels.get(ord), b.isSelected(ord)) {
+                            private static final long serialVersionUID = 1L;
+
+                            @Override
+                            public Boolean setValue(Boolean value) {
+                                super.setValue(value);
+                                return set(b.catalog, ord, Boolean.TRUE.equals(value));
+                            }
+                        };
+                    }
+                };
+            }
+        };
+    }
+
+    /* ===== Writes: ordinals refer to 'of'; retried on the new bits if a reload remapped them meanwhile ===== */
+    private boolean set(NotificationCatalog of, int ordinal, boolean selected) {
+        List<String> labels = of.labels(section);
+        if (ordinal < 0 || ordinal >= labels.size()) return false;
+        while (true) {
+            Bound b = bound();
+            int ord = b.catalog == of ? ordinal : b.catalog.ordinalOf(section, labels.get(ordinal));
+            if (ord < 0) return false;
+            long bit = 1L << ord;
+            long previous = b.update(ord >>> 6, selected ? 0L : bit, selected ? bit : 0L);
+            if (state.get() == b) return (previous & bit) != 0;
+        }
+    }
+
+    private void replace(NotificationCatalog of, BitSet selection) {
+        apply(of, selection, null, true);
+    }
+
+    /* Sets 'on' and clears 'off', or everything else if clearAll */
+    private void apply(NotificationCatalog of, BitSet on, BitSet off, boolean clearAll) {
+        while (true) {
+            Bound b = bound();
+            long[] set = remap(on, of, b.catalog).toLongArray();
+            long[] clear = off == null ? new long[0] : remap(off, of, b.catalog).toLongArray();
+            for (int w = 0; w < b.words.length(); w++) {
+                long s = w < set.length ? set[w] : 0L;
+                long c = clearAll ? -1L : w < clear.length ? clear[w] : 0L;
+                if (s != 0L || c != 0L) b.update(w, c, s);
+            }
+            changes.incrementAndGet();
+            if (state.get() == b) return;
+        }
+    }
+
+    /* The bits for the current catalog, remapped first if a reload replaced it */
+    private Bound bound() {
+        NotificationCatalog current = catalog();
+        Bound b = state.get();
+        while (b.catalog != current) {
+            BitSet seen = b.toBitSet();
+            Bound next = new Bound(current, section, changes);
+            next.or(remap(seen, b.catalog, current));
+            if (state.compareAndSet(b, next)) {
+                // carry over writes that reached the old bits while they were being copied
+                BitSet changed = b.toBitSet();
+                changed.xor(seen);
+                List<String> labels = b.catalog.labels(section);
+                for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+                    int ord = current.ordinalOf(section, labels.get(i));
+                    if (ord < 0) continue;
+                    long bit = 1L << ord;
+                    boolean selected = b.isSelected(i);
+                    next.update(ord >>> 6, selected ? 0L : bit, selected ? bit : 0L);
+                }
+                changes.incrementAndGet();
+                b = next;
+            } else {
+                b = state.get();
+            }
+        }
+        return b;
+    }
+
+    private BitSet remap(BitSet bits, NotificationCatalog from, NotificationCatalog to) {
+        List<String> labels = from.labels(section);
+        if (from == to) return bits.length() <= labels.size() ? bits : bits.get(0, labels.size());
+        BitSet out = new BitSet();
+        for (int i = bits.nextSetBit(0); i >= 0 && i < labels.size(); i = bits.nextSetBit(i + 1)) {
+            int ord = to.ordinalOf(section, labels.get(i));
+            if (ord >= 0) out.set(ord);
+        }
+        return out;
+    }
+
+    private static NotificationCatalog catalog() {
+        return CatalogService.getInstance().getCatalog();
+    }
+
+    /* ===== Serialization: selected labels, resolved against the catalog on load ===== */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(new ArrayList<>(selectedLabels()));
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        NotificationCatalog current = catalog();
+        changes = new AtomicLong();
+        Bound b = new Bound(current, section, changes);
+        for (Object label : (List<?>) in.readObject()) {
+            int ord = current.ordinalOf(section, label);
+            if (ord >= 0) b.update(ord >>> 6, 0L, 1L << ord);
+        }
+        state = new AtomicReference<>(b);
+    }
+
+    /* A selection's bits with the catalog they are ordinals of */
+    static final class Snapshot {
+        final CatalogSection section;
+        final NotificationCatalog catalog;
+        final BitSet bits;
+
+        Snapshot(CatalogSection section, NotificationCatalog catalog, BitSet bits) {
+            this.section = section;
+            this.catalog = catalog;
+            this.bits = bits;
+        }
+    }
+
+    /* Bits of one catalog version */
+    private static final class Bound {
+        final NotificationCatalog catalog;
+        final AtomicLongArray words;
+        private final AtomicLong changes;
+
+        Bound(NotificationCatalog catalog, CatalogSection section, AtomicLong changes) {
+            this.catalog = catalog;
+            this.words = new AtomicLongArray((catalog.labels(section).size() + 63) >>> 6);
+            this.changes = changes;
+        }
+
+        boolean isSelected(int ordinal) {
+            int w = ordinal >>> 6;
+            return ordinal >= 0 && w < words.length() && (words.get(w) & (1L << ordinal)) != 0;
+        }
+
+        /* CAS loop: word = (word & ~clear) | set; returns the previous word */
+        long update(int w, long clear, long set) {
+            if (w < 0 || w >= words.length()) return 0L;
+            long current, next;
+            do {
+                current = words.get(w);
+                next = (current & ~clear) | set;
+            } while (current != next && !words.compareAndSet(w, current, next));
+            if (current != next) changes.incrementAndGet();
+            return current;
+        }
+
+        void or(BitSet bits) {
+            long[] add = bits.toLongArray();
+            for (int w = 0; w < add.length && w < words.length(); w++) update(w, 0L, add[w]);
+        }
+
+        BitSet toBitSet() {
+            long[] snapshot = new long[words.length()];
+            for (int w = 0; w < snapshot.length; w++) snapshot[w] = words.get(w);
+            return BitSet.valueOf(snapshot);
+        }
+    }
+}
@@ -2,43 +2,67 @@ package com.search;
 
 import java.io.Serializable;
 import java.util.*;
-import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
 import javax.faces.context.ExternalContext;
 import javax.faces.context.FacesContext;
+import javax.servlet.http.HttpSession;
+import javax.faces.model.SelectItem;
 
 public class SelfServiceSettingsBBean implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
-    /* ===== Event + Pickup dropdown lists ===== */
-    private List<String> eventCodesList;
-    private List<String> pickupTypeList;
+    /* ===== Metrics (see Metrics; shared by all sessions) ===== */
+    private static final Histogram FETCH_LATENCY = Metrics.latency("fetchNotificationSuggestions");
+    /* One count per failed fetch (answered with an empty page) */
+    private static final Histogram FETCH_ERRORS = Metrics.size("fetchNotificationSuggestions.errors", "errors");
+    private static final Histogram TOGGLE_LATENCY = Metrics.latency("toggleNotification");
+    private static final Histogram TOGGLE_BATCH_LATENCY = Metrics.latency("toggleNotifications");
+    private static final Histogram PRINT_LATENCY = Metrics.latency("printSelections");
+    private static final Histogram PRINT_SELECTED = Metrics.size("printSelections.selected", "labels");
 
-    private Map<String, Boolean> selectedEventCodesMap;
-    private Map<String, Boolean> selectedPickupTypeMap;
+    /* ===== Event type narrowing the event code list ("" = all types) ===== */
+    private String selectedEventType;
+
+    /* ===== Event + Pickup + Store selections (lists live in the shared catalog) ===== */
+    private SelectionSet selectedEventCodesMap;
+    private SelectionSet selectedPickupTypeMap;
+    private SelectionSet selectedStoresMap;
 
     /* ===== Hidden fields for submit ===== */
     private String selectedEventCodesString;
     private String selectedPickupTypesString;
+    private String selectedStoresString;
 
     /* ===== Notification messages (chips + suggestions) ===== */
-    private List<String> searchNotificationMessages;
-    private Map<String, Boolean> selectedNotificationMap;
+    private SelectionSet selectedNotificationMap;
 
     /* Text user is currently typing in chip editor */
     private String chipQuery;
     public String getChipQuery() { return chipQuery; }
     public void setChipQuery(String chipQuery) { this.chipQuery = chipQuery; }
 
+    /* Typo-tolerant suggestions ("perscription" -> "Prescription ...") */
+    private boolean fuzzySearch;
+    public boolean isFuzzySearch() { return fuzzySearch; }
+    public void setFuzzySearch(boolean fuzzySearch) { this.fuzzySearch = fuzzySearch; }
+
+    /* ===== Event configuration table (rows live in the shared catalog; paged lazily, filtered by the selections) ===== */
+    private EventConfigDataModel smartNotificationEventMessages;
+    public EventConfigDataModel getSmartNotificationEventMessages() { return smartNotificationEventMessages; }
+
+    /* Page of the table's scroller (1-based) */
+    private int eventListPage = 1;
+    public int getEventListPage() { return eventListPage; }
+    public void setEventListPage(int eventListPage) { this.eventListPage = eventListPage; }
+
     /* Summary shown after submit */
     private String selectedSummary;
     public String getSelectedSummary() { return selectedSummary; }
 
     /* Tooltip map for Event Codes */
-    private Map<String, String> eventCodeTooltips;
-    public Map<String, String> getEventCodeTooltips() { return eventCodeTooltips; }
+    public Map<String, String> getEventCodeTooltips() { return catalog().getEventCodeTooltips(); }
 
     /* (Not used in transport; we use requestMap) */
     private String notificationSuggestionsJson;
@@ -46,226 +70,198 @@ public class SelfServiceSettingsBBean implements Serializable {
 
     @PostConstruct
     public void init() {
-        // 30 Event Codes
-        eventCodesList = Arrays.asList(
-            "EVT001 - Registration","EVT002 - Payment","EVT003 - Cancellation","EVT004 - Activation",
-            "EVT005 - Suspension","EVT006 - Reactivation","EVT007 - Modification","EVT008 - Upgrade",
-            "EVT009 - Downgrade","EVT010 - Transfer","EVT011 - Renewal","EVT012 - Expiration",
-            "EVT013 - Notification","EVT014 - Alert","EVT015 - Warning","EVT016 - Error",
-            "EVT017 - Success","EVT018 - Pending","EVT019 - Approved","EVT020 - Rejected",
-            "EVT021 - Processing","EVT022 - Completed","EVT023 - Failed","EVT024 - Timeout",
-            "EVT025 - Retry","EVT026 - Confirmation","EVT027 - Verification","EVT028 - Authentication",
-            "EVT029 - Authorization","EVT030 - Logout"
-        );
-
-        // 30 Pickup Types
-        pickupTypeList = Arrays.asList(
-            "Home Delivery","Store Pickup","Mail Order","Express Delivery",
-            "Same Day Delivery","Next Day Delivery","Standard Shipping","Priority Shipping",
-            "Overnight Shipping","International Shipping","Curbside Pickup","Drive-Through Pickup",
-            "Locker Pickup","Counter Pickup","Pharmacy Pickup","In-Store Collection",
-            "Click and Collect","Ship to Store","Local Delivery","Regional Delivery",
-            "National Delivery","Courier Service","Postal Service","Parcel Locker",
-            "Drop Box","Mobile Delivery","Scheduled Delivery","Weekend Delivery",
-            "Evening Delivery","Morning Delivery"
-        );
-
-        // 30 Notification Messages
-        searchNotificationMessages = Arrays.asList(
-        	    "Prescription ready for pickup",
-        	    "Medicine out of stock – urgent!",
-        	    "Refill reminder",
-        	    "Order shipped",
-        	    "Discount available: 20% off",
-        	    "New prescription received (℞)",
-        	    "Insurance claim approved",
-        	    "Payment pending – pay @ counter",
-        	    "Delivery scheduled",
-        	    "Package delayed",
-        	    "Appointment reminder",
-        	    "Lab results ready",
-        	    "Vaccination due",
-        	    "Medication interaction alert",
-        	    "Dosage change notification (5mg -> 10mg)",
-        	    "Generic alternative available (Brand -> Generic)",
-        	    "Prior authorization required",
-        	    "Copay amount changed: ₹150 -> ₹200",
-        	    "Pharmacy location changed",
-        	    "Transfer request received",
-        	    "Prescription expired",
-        	    "Doctor consultation required",
-        	    "Side effects reported",
-        	    "Allergic reaction warning",
-        	    "Temperature-sensitive item (2°C – 8°C)",
-        	    "Controlled substance notice",
-        	    "Refill limit reached (3/3)",
-        	    "Insurance verification needed",
-        	    "Signature required for delivery",
-        	    "Special handling instructions",
-
-        	    // Special character stress test
-        	    "! @ # $ % ^ & * ( ) _ + - = { } [ ] : ; \" ' < > / \\ | ? ~ `",
-        	    "Math symbols: ± × ÷ √ ∞ ≠ ≥ ≤ π µ ∑ ∆ °C",
-        	    "Quotes test: \"double\" 'single' “smart quotes” ‘test’",
-        	    "Arrows: -> <- => <= >> << ->> <<-",
-        	    "URL: https://example.com/api?x=1&y=2",
-        	    "JSON snippet: {\"key\":\"value\", \"count\":123}",
-        	    "Path test: C:\\Program Files\\Java\\",
-        	    "Slash variants: / \\ // \\\\ \\/",
-        	    "Reserved chars test: & < > \" ' / \\",
-        	    "Newline and tab test:\nLine 2\tTabbed text"
-        	);
-
-        selectedEventCodesMap = new LinkedHashMap<>();
-        eventCodesList.forEach(code -> selectedEventCodesMap.put(code, false));
-
-        selectedPickupTypeMap = new LinkedHashMap<>();
-        pickupTypeList.forEach(type -> selectedPickupTypeMap.put(type, false));
-
-        selectedNotificationMap = new LinkedHashMap<>();
-        searchNotificationMessages.forEach(m -> selectedNotificationMap.put(m, false));
-
-        eventCodeTooltips = new LinkedHashMap<>();
-        eventCodeTooltips.put("EVT001 - Registration", "Employee Created");
-        eventCodeTooltips.put("EVT002 - Payment", "Employee Updated");
-        eventCodeTooltips.put("EVT003 - Cancellation", "Employee Deleted");
-
+        selectedEventCodesMap = new SelectionSet(CatalogSection.EVENT_CODES);
+        selectedPickupTypeMap = new SelectionSet(CatalogSection.PICKUP_TYPES);
+        selectedNotificationMap = new SelectionSet(CatalogSection.NOTIFICATIONS);
+        selectedStoresMap = new SelectionSet(CatalogSection.STORES);
+        smartNotificationEventMessages = new EventConfigDataModel(selectedStoresMap, selectedEventCodesMap,
+                selectedPickupTypeMap, selectedNotificationMap);
+
+        selectedEventType = "";
         chipQuery = "";
         selectedEventCodesString = "";
         selectedPickupTypesString = "";
-        notificationSuggestionsJson = "[]";
+        selectedStoresString = "";
+        notificationSuggestionsJson = NotificationCatalog.EMPTY_PAGE_JSON;
+    }
+
+    /* ====== Event type (the catalog holds each type's codes; switching only changes the view) ====== */
+    public String getSelectedEventType() { return selectedEventType; }
+    public void setSelectedEventType(String selectedEventType) {
+        this.selectedEventType = selectedEventType == null ? "" : selectedEventType;
+    }
+
+    public List<SelectItem> getEventTypeItems() {
+        List<String> types = catalog().getEventTypes();
+        List<SelectItem> items = new ArrayList<>(types.size() + 1);
+        items.add(new SelectItem("", "All Types"));
+        for (String type : types) items.add(new SelectItem(type, type));
+        return items;
     }
 
+    /* AJAX target of the event type menu; the setter has done the work */
+    public String onEventTypeChange() { return null; }
+
     /* ====== Getters for UI lists ====== */
-    public List<String> getEventCodesList() { return eventCodesList; }
-    public List<String> getPickupTypeList() { return pickupTypeList; }
+    public List<String> getEventCodesList() {
+        NotificationCatalog catalog = catalog();
+        return catalog.eventCodes(catalog.eventTypeIndex(selectedEventType));
+    }
+    public List<String> getPickupTypeList() { return catalog().getPickupTypes(); }
+    public List<String> getStoresList() { return catalog().getStores(); }
     public Map<String, Boolean> getSelectedEventCodesMap() { return selectedEventCodesMap; }
     public Map<String, Boolean> getSelectedPickupTypeMap() { return selectedPickupTypeMap; }
     public Map<String, Boolean> getSelectedNotificationMap() { return selectedNotificationMap; }
+    public Map<String, Boolean> getSelectedStoresMap() { return selectedStoresMap; }
 
-    /* ===== Hidden fields (string ↔ map sync) ===== */
+    /* Label -> catalog ordinal, rendered as data-ord for the compact hidden-field format */
+    public Map<String, Integer> getEventCodeOrdinals() { return catalog().ordinals(CatalogSection.EVENT_CODES); }
+    public Map<String, Integer> getPickupTypeOrdinals() { return catalog().ordinals(CatalogSection.PICKUP_TYPES); }
+    public Map<String, Integer> getStoreOrdinals() { return catalog().ordinals(CatalogSection.STORES); }
+
+    /* ===== Hidden fields (string ↔ map sync; SelectionCodec or legacy labels) ===== */
     public String getSelectedEventCodesString() { return selectedEventCodesString; }
     public void setSelectedEventCodesString(String val) {
         this.selectedEventCodesString = val;
-        selectedEventCodesMap.replaceAll((k, v) -> false);
-        if (val != null && !val.trim().isEmpty()) {
-            for (String code : val.split(",")) {
-                String c = code.trim();
-                if (!c.isEmpty() && selectedEventCodesMap.containsKey(c)) {
-                    selectedEventCodesMap.put(c, true);
-                }
-            }
-        }
+        NotificationCatalog rendered = renderedCatalog("eventCodesCatalogVersion");
+        selectedEventCodesMap.setFromWire(val, rendered, renderedEventCodes(rendered));
     }
 
     public String getSelectedPickupTypesString() { return selectedPickupTypesString; }
     public void setSelectedPickupTypesString(String val) {
         this.selectedPickupTypesString = val;
-        selectedPickupTypeMap.replaceAll((k, v) -> false);
-        if (val != null && !val.trim().isEmpty()) {
-            for (String type : val.split(",")) {
-                String t = type.trim();
-                if (!t.isEmpty() && selectedPickupTypeMap.containsKey(t)) {
-                    selectedPickupTypeMap.put(t, true);
-                }
-            }
+        selectedPickupTypeMap.setFromWire(val, renderedCatalog("catalogVersion"));
+    }
+
+    public String getSelectedStoresString() { return selectedStoresString; }
+    public void setSelectedStoresString(String val) {
+        this.selectedStoresString = val;
+        selectedStoresMap.setFromWire(val, renderedCatalog("catalogVersion"));
+    }
+
+    /* Rendered into the form so posted ordinals can be read against the right catalog */
+    public long getCatalogVersion() { return catalog().getVersion(); }
+
+    /* Catalog the posted part of the page was rendered from (its version in request parameter 'name';
+       the event codes are re-rendered on their own and carry their own, falling back to the page's),
+       or null if it has been replaced too long ago (the checkbox bindings, which are by label, then
+       carry the selection on their own) */
+    private static NotificationCatalog renderedCatalog(String name) {
+        Map<String, String> params = FacesContext.getCurrentInstance().getExternalContext()
+                .getRequestParameterMap();
+        String posted = params.get(name);
+        if (posted == null) posted = params.get("catalogVersion");
+        if (posted == null) return catalog();
+        try {
+            return CatalogService.getInstance().getCatalog(Long.parseLong(posted));
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
 
+    /* Ordinals of the event codes the posted page listed (its event type, rendered next to them), null for all:
+       codes selected under another type are not on the page and must survive the submit */
+    private int[] renderedEventCodes(NotificationCatalog rendered) {
+        String type = FacesContext.getCurrentInstance().getExternalContext()
+                .getRequestParameterMap().get("eventCodeScope");
+        if (type == null) type = selectedEventType;
+        NotificationCatalog of = rendered != null ? rendered : catalog();
+        return of.eventCodesOfType(of.eventTypeIndex(type));
+    }
+
     /* Drives chip rendering */
     public List<String> getSelectedNotificationList() {
-        return selectedNotificationMap.entrySet().stream()
-                .filter(Map.Entry::getValue)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        return selectedNotificationMap.selectedLabels();
     }
 
-    /* Toggle from client (chips) */
-    private String toggleLabel;
-    private boolean toggleChecked;
-    public String getToggleLabel() { return toggleLabel; }
-    public void setToggleLabel(String toggleLabel) { this.toggleLabel = toggleLabel; }
-    public boolean isToggleChecked() { return toggleChecked; }
-    public void setToggleChecked(boolean toggleChecked) { this.toggleChecked = toggleChecked; }
-
+    /* Toggle from client (chips): "label" and "checked" are read from this request's own
+       parameters, never kept in the session, so overlapping toggles cannot mix their values */
     public String toggleNotification() {
-        if (toggleLabel != null) {
-            selectedNotificationMap.put(toggleLabel, toggleChecked);
+        long start = System.nanoTime();
+        Map<String, String> params = FacesContext.getCurrentInstance().getExternalContext()
+                .getRequestParameterMap();
+        String label = params.get("label");
+        if (label != null) {
+            selectedNotificationMap.put(label, "true".equals(params.get("checked")));
         }
+        TOGGLE_LATENCY.recordSince(start);
+        return null;
+    }
+
+    /* Batched toggles from client: "+len:label-len:label..." (see SelectionSet.applyChanges) */
+    private String toggleBatch;
+    public String getToggleBatch() { return toggleBatch; }
+    public void setToggleBatch(String toggleBatch) { this.toggleBatch = toggleBatch; }
+
+    /* One request for any number of chip changes (e.g. Select All).
+       The batch is read from this request's own parameter first: toggleBatch is
+       shared session state that an overlapping request may have overwritten. */
+    public String toggleNotifications() {
+        long start = System.nanoTime();
+        String batch = FacesContext.getCurrentInstance().getExternalContext()
+                .getRequestParameterMap().get("batch");
+        if (batch == null) batch = toggleBatch;
+        if (batch != null && !batch.isEmpty()) {
+            selectedNotificationMap.applyChanges(batch);
+        }
+        TOGGLE_BATCH_LATENCY.recordSince(start);
         return null;
     }
 
     /* Summary */
     public String printSelections() {
-        String events = selectedEventCodesMap.entrySet().stream()
-                .filter(Map.Entry::getValue).map(Map.Entry::getKey)
-                .collect(Collectors.joining(", "));
-
-        String pickups = selectedPickupTypeMap.entrySet().stream()
-                .filter(Map.Entry::getValue).map(Map.Entry::getKey)
-                .collect(Collectors.joining(", "));
-
-        String notifs = selectedNotificationMap.entrySet().stream()
-                .filter(Map.Entry::getValue).map(Map.Entry::getKey)
-                .collect(Collectors.joining(", "));
+        long start = System.nanoTime();
+        String events = selectedEventCodesMap.join(", ");
+        String pickups = selectedPickupTypeMap.join(", ");
+        String stores = selectedStoresMap.join(", ");
+        String notifs = selectedNotificationMap.join(", ");
 
         selectedSummary =
                 "<b>Event Codes:</b> " + (events.isEmpty() ? "None" : events) + "<br/>" +
                 "<b>Pickup Types:</b> " + (pickups.isEmpty() ? "None" : pickups) + "<br/>" +
+                "<b>Stores:</b> " + (stores.isEmpty() ? "None" : stores) + "<br/>" +
                 "<b>Notifications:</b> " + (notifs.isEmpty() ? "None" : notifs);
 
+        PRINT_SELECTED.record(selectedEventCodesMap.selectedCount() + selectedPickupTypeMap.selectedCount()
+                + selectedStoresMap.selectedCount() + selectedNotificationMap.selectedCount());
+        PRINT_LATENCY.recordSince(start);
+        return null;
+    }
+
+    /* The submit has stored the selections the table filters by; show its first page */
+    public String filterSmartNotifications() {
+        eventListPage = 1;
         return null;
     }
 
     /**
-     * RichFaces AJAX: filter suggestions; return JSON via requestMap
+     * RichFaces AJAX: filter suggestions; return JSON via requestMap.
+     * The page itself now fetches from SuggestionServlet (/suggest).
      */
     public void fetchNotificationSuggestions() {
+        long start = System.nanoTime();
         ExternalContext ext = FacesContext.getCurrentInstance().getExternalContext();
         try {
-            String q = chipQuery == null ? "" : chipQuery.trim().toLowerCase();
-
-            List<String> filtered = q.isEmpty()
-                    ? new ArrayList<>(searchNotificationMessages)
-                    : searchNotificationMessages.stream()
-                        .filter(m -> m.toLowerCase().contains(q))
-                        .collect(Collectors.toList());
-
-            StringBuilder json = new StringBuilder(filtered.size() * 32);
-            json.append('[');
-            for (int i = 0; i < filtered.size(); i++) {
-                if (i > 0) json.append(',');
-                json.append('"').append(escapeJson(filtered.get(i))).append('"');
-            }
-            json.append(']');
-
-            ext.getRequestMap().put("notifJson", json.toString());
+            String q = CatalogService.normalizeQuery(chipQuery);
+
+            ext.getRequestMap().put("notifJson", CatalogService.getInstance().suggestionsJson(
+                    q, 0, NotificationCatalog.DEFAULT_SUGGESTION_LIMIT, searchContext(ext), fuzzySearch));
         } catch (Exception e) {
-            ext.getRequestMap().put("notifJson", "[]");
+            FETCH_ERRORS.record(1);
+            ext.log("Notification suggestions failed for query '" + chipQuery + "'", e);
+            ext.getRequestMap().put("notifJson", NotificationCatalog.EMPTY_PAGE_JSON);
+        } finally {
+            FETCH_LATENCY.recordSince(start);
         }
     }
 
-    private String escapeJson(String s) {
-        if (s == null) return "";
-        StringBuilder sb = new StringBuilder();
-        for (char c : s.toCharArray()) {
-            switch (c) {
-                case '\\': sb.append("\\\\"); break;
-                case '"': sb.append("\\\""); break;
-                case '/': sb.append("\\/"); break;
-                case '\b': sb.append("\\b"); break;
-                case '\f': sb.append("\\f"); break;
-                case '\n': sb.append("\\n"); break;
-                case '\r': sb.append("\\r"); break;
-                case '\t': sb.append("\\t"); break;
-                default:
-                    if (c <= 0x1F || c >= 0x7F) {
-                        sb.append(String.format("\\u%04x", (int) c));
-                    } else {
-                        sb.append(c);
-                    }
-            }
-        }
-        return sb.toString();
+    /* Same per-session context the /suggest servlet narrows through */
+    private static SearchContext searchContext(ExternalContext ext) {
+        return SearchContext.of((HttpSession) ext.getSession(true));
+    }
+
+    /* Shared, application-wide catalog; never serialized with the session */
+    private static NotificationCatalog catalog() {
+        return CatalogService.getInstance().getCatalog();
     }
 }
@@ -0,0 +1,233 @@
+package com.search;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Application-wide cache of serialized suggestion JSON, keyed by catalog
+ * version, search mode, page and normalized query.
+ *
+ * Bounded both by entry count and by the total number of cached chars.
+ * Eviction is LRU, but a new entry is only admitted over the LRU victim if a
+ * small count-min frequency sketch (TinyLFU) says it has been asked for more
+ * often, so one-off queries cannot flush the hot prefixes.
+ *
+ * A lookup is one {@link ConcurrentHashMap} read and takes no lock. The
+ * access is recorded in a small lossy ring buffer instead; whoever fills it
+ * half-way drains it into the LRU order and the sketch, if the policy lock
+ * is free, and writes drain it before they evict. Under contention some
+ * accesses are dropped, so recency and frequency are sampled rather than
+ * exact, which the admission policy tolerates.
+ *
+ * The counters are published over JMX by {@link Metrics}.
+ */
+public class SuggestionCache implements SuggestionCacheMXBean {
+
+    /* Access buffer slots (a power of two) */
+    private static final int BUFFER_SIZE = 128;
+    private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+
+    private final int maxEntries;
+    private final long maxChars;
+
+    private final ConcurrentHashMap<String, String> entries;
+
+    /* Eviction policy, guarded by lock: keys in access order (-> length), admission sketch, total length */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Integer> order;
+    private final FrequencySketch sketch;
+    private volatile long chars;
+
+    /* Accessed keys not yet applied to the policy: slots [reads, writes) of buffer */
+    private final AtomicReferenceArray<String> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+    private final AtomicLong writes = new AtomicLong();
+    private volatile long reads;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public SuggestionCache(int maxEntries, long maxChars) {
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+        this.entries = new ConcurrentHashMap<>(maxEntries * 4 / 3 + 1);
+        this.order = new LinkedHashMap<>(maxEntries * 4 / 3 + 1, 0.75f, true);
+        this.sketch = new FrequencySketch(maxEntries);
+    }
+
+    public static String key(long catalogVersion, String normalizedQuery, int offset, int limit, boolean fuzzy) {
+        return catalogVersion + (fuzzy ? ":f:" : ":e:") + offset + ":" + limit + ":" + normalizedQuery;
+    }
+
+    /** Cached JSON for the key, or null; lookups are sampled toward recency and admission. */
+    public String get(String key) {
+        String json = entries.get(key);
+        if (json == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        if (recordAccess(key) && lock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return json;
+    }
+
+    public void put(String key, String json) {
+        if (json.length() > maxChars) return;
+        lock.lock();
+        try {
+            drain();
+            Integer old = order.remove(key);
+            long total = chars - (old == null ? 0 : old);
+
+            while (!order.isEmpty() && (order.size() >= maxEntries || total + json.length() > maxChars)) {
+                Map.Entry<String, Integer> victim = order.entrySet().iterator().next();
+                if (old == null && sketch.frequency(key) <= sketch.frequency(victim.getKey())) {
+                    rejections.increment();
+                    chars = total; // victims evicted so far stay out
+                    return;
+                }
+                order.remove(victim.getKey());
+                entries.remove(victim.getKey());
+                total -= victim.getValue();
+                evictions.increment();
+            }
+            order.put(key, json.length());
+            entries.put(key, json);
+            chars = total + json.length();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            order.clear();
+            chars = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Adds key to the access buffer; dropped if the buffer is full or another
+     * reader took the slot. True once the buffer is half full.
+     */
+    private boolean recordAccess(String key) {
+        long head = reads, tail = writes.get();
+        long pending = tail - head;
+        if (pending >= BUFFER_SIZE) return true;
+        if (!writes.compareAndSet(tail, tail + 1)) return false;
+        buffer.lazySet((int) tail & BUFFER_MASK, key);
+        return pending + 1 >= BUFFER_SIZE / 2;
+    }
+
+    /* Applies the buffered accesses to the LRU order and the sketch; caller holds lock */
+    private void drain() {
+        long head = reads, tail = writes.get();
+        for (; head < tail; head++) {
+            int slot = (int) head & BUFFER_MASK;
+            String key = buffer.get(slot);
+            if (key == null) break; // claimed but not written yet; picked up next time
+            buffer.lazySet(slot, null);
+            sketch.increment(key);
+            order.get(key);
+        }
+        reads = head;
+    }
+
+    /* ===== Counters ===== */
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+    public long getRejections() { return rejections.sum(); }
+    public int getSize() { return entries.size(); }
+    public long getChars() { return chars; }
+
+    public double getHitRatio() {
+        long h = hits.sum(), total = h + misses.sum();
+        return total == 0 ? 0d : (double) h / total;
+    }
+
+    /**
+     * Count-min sketch with four rows of 4-bit saturating counters packed
+     * into longs. All counters are halved once the sample window fills, so
+     * frequencies follow recent traffic.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int size = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+            table = new long[size];
+            mask = size - 1;
+            sampleSize = 10 * Math.max(capacity, 16);
+        }
+
+        int frequency(Object e) {
+            int h = spread(e.hashCode());
+            int min = 15;
+            for (int row = 0; row < 4; row++) {
+                int idx = index(h, row);
+                int shift = offset(h, row);
+                min = Math.min(min, (int) ((table[idx] >>> shift) & 0xfL));
+            }
+            return min;
+        }
+
+        void increment(Object e) {
+            int h = spread(e.hashCode());
+            boolean added = false;
+            for (int row = 0; row < 4; row++) {
+                int idx = index(h, row);
+                int shift = offset(h, row);
+                if (((table[idx] >>> shift) & 0xfL) != 0xfL) {
+                    table[idx] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        private int index(int h, int row) {
+            long hash = (h + SEEDS[row]) * SEEDS[row];
+            hash += hash >>> 32;
+            return (int) hash & mask;
+        }
+
+        /* Row r owns nibbles 4r..4r+3 of the word; the hash picks one of them */
+        private int offset(int h, int row) {
+            return ((row << 2) + ((h >>> (row << 3)) & 3)) << 2;
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
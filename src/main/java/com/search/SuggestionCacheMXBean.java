@@ -0,0 +1,21 @@
+package com.search;
+
+/**
+ * JMX view of the {@link SuggestionCache} counters.
+ */
+public interface SuggestionCacheMXBean {
+
+    long getHits();
+
+    long getMisses();
+
+    long getEvictions();
+
+    long getRejections();
+
+    int getSize();
+
+    long getChars();
+
+    double getHitRatio();
+}
@@ -0,0 +1,120 @@
+package com.search;
+
+import java.util.Arrays;
+
+/**
+ * Picks one page of the best-scoring matches without sorting the full match
+ * set.
+ *
+ * Relevance is: prefix match, then word-start match, then any other infix
+ * match of the whole query, then entries that contain every term of a
+ * multi-word query but not as one phrase, then typo-tolerant (fuzzy-only)
+ * match; ties go to the shorter
+ * label, then to catalog order. Each candidate is packed into a single long
+ * (rank | length | ordinal) so that smaller means better, and a bounded
+ * max-heap of {@code offset + limit} entries keeps the best ones seen so
+ * far: O(m log k) for m matches.
+ */
+final class SuggestionRanker {
+
+    static final int PREFIX = 0;
+    static final int WORD_START = 1;
+    static final int INFIX = 2;
+    static final int ALL_TERMS = 3;
+    static final int FUZZY = 4;
+
+    private static final int LENGTH_BITS = 20;
+    private static final int ORDINAL_BITS = 31;
+    private static final long MAX_LENGTH = (1L << LENGTH_BITS) - 1;
+    private static final long ORDINAL_MASK = (1L << ORDINAL_BITS) - 1;
+
+    private SuggestionRanker() { }
+
+    /**
+     * Ordinals of the matches ranked {@code offset .. offset+limit-1}, best
+     * first. {@code query} must be normalized the same way as the index keys.
+     */
+    static int[] topK(int[] matches, String query, TrigramIndex index, int offset, int limit) {
+        int k = (int) Math.min((long) offset + limit, matches.length);
+        if (k <= offset) return new int[0];
+
+        TextTable keys = index.keys();
+        String[] terms = TrigramIndex.terms(query);
+        long[] heap = new long[k];
+        int size = 0;
+        for (int ord : matches) {
+            int rank = rank(keys, ord, query);
+            if (rank == FUZZY && terms.length > 1 && index.containsAll(ord, terms)) rank = ALL_TERMS;
+            long packed = ((long) rank << (LENGTH_BITS + ORDINAL_BITS))
+                    | (Math.min(keys.length(ord), MAX_LENGTH) << ORDINAL_BITS)
+                    | ord;
+            if (size < k) {
+                heap[size] = packed;
+                siftUp(heap, size++);
+            } else if (packed < heap[0]) {
+                heap[0] = packed;
+                siftDown(heap, k);
+            }
+        }
+
+        Arrays.sort(heap, 0, size);
+        int[] page = new int[size - offset];
+        for (int i = offset; i < size; i++) {
+            page[i - offset] = (int) (heap[i] & ORDINAL_MASK);
+        }
+        return page;
+    }
+
+    /** Best match class of {@code query} as one phrase inside key {@code ord}, else FUZZY. */
+    static int rank(TextTable keys, int ord, String query) {
+        int best = FUZZY;
+        for (int at = keys.indexOf(ord, query, 0); at >= 0; at = keys.indexOf(ord, query, at + 1)) {
+            if (at == 0) return PREFIX;
+            if (!Character.isLetterOrDigit(keys.charAt(ord, at - 1))) {
+                best = WORD_START;
+            } else if (best == FUZZY) {
+                best = INFIX;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Position of the occurrence of {@code term} in key {@code ord} that
+     * {@link #rank} credits: the first one at a word start, else the first
+     * one; -1 if the term does not occur.
+     */
+    static int occurrence(TextTable keys, int ord, String term) {
+        int first = keys.indexOf(ord, term, 0);
+        for (int at = first; at >= 0; at = keys.indexOf(ord, term, at + 1)) {
+            if (at == 0 || !Character.isLetterOrDigit(keys.charAt(ord, at - 1))) return at;
+        }
+        return first;
+    }
+
+    /* ===== max-heap on packed longs ===== */
+    private static void siftUp(long[] heap, int i) {
+        long v = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] >= v) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = v;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        long v = heap[0];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] > heap[child]) child++;
+            if (v >= heap[child]) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = v;
+    }
+}
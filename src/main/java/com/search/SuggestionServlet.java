@@ -0,0 +1,65 @@
+package com.search;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Plain servlet serving notification suggestion JSON for the chip editor.
+ *
+ * Answers {@code GET /suggest?q=...&offset=0&limit=50[&fuzzy=true]} straight from the
+ * shared catalog and suggestion cache, without restoring the JSF view, so a
+ * keystroke costs a cache lookup instead of a full Faces lifecycle. An
+ * existing session is only consulted for its {@link SearchContext}.
+ * The JSF action {@code fetchNotificationSuggestions} returns the same JSON.
+ */
+public class SuggestionServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Histogram LATENCY = Metrics.latency("suggest");
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        if (request.getCharacterEncoding() == null) request.setCharacterEncoding("UTF-8");
+        String query = CatalogService.normalizeQuery(request.getParameter("q"));
+
+        int offset = intParam(request, "offset", 0);
+        int limit = intParam(request, "limit", NotificationCatalog.DEFAULT_SUGGESTION_LIMIT);
+        boolean fuzzy = "true".equals(request.getParameter("fuzzy"));
+
+        String json = CatalogService.getInstance().suggestionsJson(
+                query, offset, limit, searchContext(request), fuzzy);
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        PrintWriter out = response.getWriter();
+        out.write(json);
+        out.flush();
+        LATENCY.recordSince(start);
+    }
+
+    /* The session's search context if a session already exists; never creates one */
+    private static SearchContext searchContext(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        return session == null ? null : SearchContext.of(session);
+    }
+
+    private static int intParam(HttpServletRequest request, String name, int fallback) {
+        String raw = request.getParameter(name);
+        if (raw == null || raw.isEmpty()) return fallback;
+        try {
+            return Integer.parseInt(raw.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.search;
+
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only table of strings stored back to back in one char buffer, with
+ * an offsets table: string {@code i} is {@code chars[offset(i), offset(i+1))}.
+ *
+ * Built on heap arrays in memory, or viewed straight out of a mapped
+ * {@link CatalogIndexFile}; the same code serves both. Matching works on the
+ * stored chars, so searching does not materialize a String per entry.
+ */
+final class TextTable {
+
+    private final IntBuffer offsets;
+    private final CharBuffer chars;
+
+    /* Backing array when on heap (faster loops), else null */
+    private final char[] array;
+    private final int base;
+
+    TextTable(IntBuffer offsets, CharBuffer chars) {
+        this.offsets = offsets;
+        this.chars = chars;
+        this.array = chars.hasArray() ? chars.array() : null;
+        this.base = chars.hasArray() ? chars.arrayOffset() : 0;
+    }
+
+    static TextTable of(List<String> strings) {
+        int n = strings.size();
+        int[] offsets = new int[n + 1];
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            total += strings.get(i).length();
+            if (total > Integer.MAX_VALUE) throw new IllegalArgumentException("Text table over 2G chars");
+            offsets[i + 1] = (int) total;
+        }
+        char[] chars = new char[(int) total];
+        for (int i = 0; i < n; i++) {
+            String s = strings.get(i);
+            s.getChars(0, s.length(), chars, offsets[i]);
+        }
+        return new TextTable(IntBuffer.wrap(offsets), CharBuffer.wrap(chars));
+    }
+
+    int size() { return offsets.limit() - 1; }
+
+    int length(int i) { return offsets.get(i + 1) - offsets.get(i); }
+
+    char charAt(int i, int pos) { return chars.get(offsets.get(i) + pos); }
+
+    String get(int i) {
+        int start = offsets.get(i), len = offsets.get(i + 1) - start;
+        if (array != null) return new String(array, base + start, len);
+        char[] out = new char[len];
+        for (int k = 0; k < len; k++) out[k] = chars.get(start + k);
+        return new String(out);
+    }
+
+    /** Appends string {@code i} without an intermediate String. */
+    void appendTo(StringBuilder sb, int i) {
+        int start = offsets.get(i), end = offsets.get(i + 1);
+        if (array != null) {
+            sb.append(array, base + start, end - start);
+        } else {
+            for (int k = start; k < end; k++) sb.append(chars.get(k));
+        }
+    }
+
+    /** Position of {@code query} in string {@code i} at or after {@code from}, or -1. */
+    int indexOf(int i, String query, int from) {
+        int start = offsets.get(i), end = offsets.get(i + 1), m = query.length();
+        if (m == 0) return from <= end - start ? from : -1;
+        char first = query.charAt(0);
+        int last = end - m;
+        if (array != null) {
+            for (int p = start + from; p <= last; p++) {
+                if (array[base + p] != first) continue;
+                int k = 1;
+                while (k < m && array[base + p + k] == query.charAt(k)) k++;
+                if (k == m) return p - start;
+            }
+        } else {
+            for (int p = start + from; p <= last; p++) {
+                if (chars.get(p) != first) continue;
+                int k = 1;
+                while (k < m && chars.get(p + k) == query.charAt(k)) k++;
+                if (k == m) return p - start;
+            }
+        }
+        return -1;
+    }
+
+    /** Compares string {@code i} with {@code s} like {@link String#compareTo}. */
+    int compareTo(int i, String s) {
+        int start = offsets.get(i), len = offsets.get(i + 1) - start;
+        int n = Math.min(len, s.length());
+        for (int k = 0; k < n; k++) {
+            int d = chars.get(start + k) - s.charAt(k);
+            if (d != 0) return d;
+        }
+        return len - s.length();
+    }
+
+    /** Length of the common prefix of strings {@code a} and {@code b}. */
+    int commonPrefix(int a, int b) {
+        int sa = offsets.get(a), sb = offsets.get(b);
+        int n = Math.min(offsets.get(a + 1) - sa, offsets.get(b + 1) - sb);
+        int k = 0;
+        while (k < n && chars.get(sa + k) == chars.get(sb + k)) k++;
+        return k;
+    }
+
+    /* Raw buffers, for CatalogIndexFile */
+    IntBuffer offsets() { return offsets.duplicate(); }
+    CharBuffer chars() { return chars.duplicate(); }
+
+    /** Read-only List view; each get() decodes one string. */
+    List<String> asList() {
+        return new Strings();
+    }
+
+    private final class Strings extends AbstractList<String> implements RandomAccess {
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index);
+            return TextTable.this.get(index);
+        }
+
+        @Override
+        public int size() { return TextTable.this.size(); }
+    }
+}
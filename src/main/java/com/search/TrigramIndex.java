@@ -0,0 +1,266 @@
+package com.search;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.*;
+
+/**
+ * N-gram inverted index over a fixed list of labels.
+ *
+ * Every distinct 1-, 2- and 3-gram of each normalized label (see
+ * {@link SearchKeys}) maps to a sorted posting list of label ordinals. A
+ * query is split into whitespace-separated terms that must all occur, in
+ * any order. A single term of up to three characters is answered straight
+ * from one posting list; otherwise the posting lists of every short term
+ * and of every trigram of the longer terms are intersected (shortest first,
+ * galloping) and only the surviving candidates are verified, so the cost
+ * follows the number of matches rather than the size of the catalog.
+ *
+ * The index is flat: the keys are a {@link TextTable}, the packed grams a
+ * sorted long buffer, and all posting lists one int buffer addressed by a
+ * start table. The same layout is written to and mapped back from a
+ * {@link CatalogIndexFile}.
+ */
+public class TrigramIndex {
+
+    private static final int GRAM = 3;
+    private static final int[] EMPTY = new int[0];
+
+    /* Normalized search keys, one per ordinal */
+    private final TextTable keys;
+
+    /* Sorted packed grams; postings of grams[g] are postings[starts[g], starts[g+1]) */
+    private final LongBuffer grams;
+    private final IntBuffer starts;
+    private final IntBuffer postings;
+
+    public TrigramIndex(List<String> labels) {
+        int n = labels.size();
+        List<String> normalized = new ArrayList<>(n);
+
+        Map<Long, IntList> build = new HashMap<>();
+        for (int ord = 0; ord < n; ord++) {
+            String key = SearchKeys.normalize(labels.get(ord));
+            normalized.add(key);
+
+            int len = key.length();
+            for (int i = 0; i < len; i++) {
+                for (int g = 1; g <= GRAM && i + g <= len; g++) {
+                    Long gram = pack(key, i, g);
+                    IntList list = build.get(gram);
+                    if (list == null) {
+                        list = new IntList();
+                        build.put(gram, list);
+                    }
+                    // ordinals arrive in order; skip repeats of the same gram in one key
+                    if (list.size == 0 || list.data[list.size - 1] != ord) {
+                        list.add(ord);
+                    }
+                }
+            }
+        }
+        keys = TextTable.of(normalized);
+
+        long[] sorted = new long[build.size()];
+        int g = 0, total = 0;
+        for (Long gram : build.keySet()) sorted[g++] = gram;
+        Arrays.sort(sorted);
+        int[] startTable = new int[sorted.length + 1];
+        for (g = 0; g < sorted.length; g++) {
+            total += build.get(sorted[g]).size;
+            startTable[g + 1] = total;
+        }
+        int[] all = new int[total];
+        for (g = 0; g < sorted.length; g++) {
+            IntList list = build.get(sorted[g]);
+            System.arraycopy(list.data, 0, all, startTable[g], list.size);
+        }
+
+        grams = LongBuffer.wrap(sorted);
+        starts = IntBuffer.wrap(startTable);
+        postings = IntBuffer.wrap(all);
+    }
+
+    /* Over prebuilt (e.g. mapped) tables, see CatalogIndexFile */
+    TrigramIndex(TextTable keys, LongBuffer grams, IntBuffer starts, IntBuffer postings) {
+        this.keys = keys;
+        this.grams = grams;
+        this.starts = starts;
+        this.postings = postings;
+    }
+
+    public int size() { return keys.size(); }
+
+    /** Normalized search key of the label at {@code ordinal}. */
+    public String key(int ordinal) { return keys.get(ordinal); }
+
+    TextTable keys() { return keys; }
+    LongBuffer grams() { return grams.duplicate(); }
+    IntBuffer starts() { return starts.duplicate(); }
+    IntBuffer postings() { return postings.duplicate(); }
+
+    /**
+     * Ordinals (ascending) of all labels containing every whitespace-separated
+     * term of {@code query}, in any order. The query must already be trimmed
+     * and normalized with {@link SearchKeys}.
+     */
+    public int[] search(String query) {
+        String[] terms = terms(query);
+        if (terms.length == 0) {
+            int[] all = new int[size()];
+            for (int i = 0; i < all.length; i++) all[i] = i;
+            return all;
+        }
+
+        // one posting list per short term, one per trigram of each longer term
+        int grams = 0;
+        for (String term : terms) grams += term.length() <= GRAM ? 1 : term.length() - GRAM + 1;
+        long[] lists = new long[grams];
+        int count = 0;
+        for (String term : terms) {
+            int len = term.length();
+            for (int i = 0; i == 0 || i + GRAM <= len; i++) {
+                int g = find(pack(term, i, Math.min(len, GRAM)));
+                if (g < 0) return EMPTY;
+                lists[count++] = (long) length(g) << 32 | g; // sorts shortest first
+            }
+        }
+        Arrays.sort(lists, 0, count);
+
+        int[] candidates = copy((int) lists[0]);
+        int n = candidates.length;
+        for (int i = 1; i < count && n > 0; i++) {
+            if (lists[i] != lists[i - 1]) n = intersect(candidates, n, (int) lists[i]);
+        }
+
+        // a short term is its own posting list; longer ones need their trigrams in a row
+        boolean verify = false;
+        for (String term : terms) verify |= term.length() > GRAM;
+        if (!verify) return n == candidates.length ? candidates : Arrays.copyOf(candidates, n);
+
+        int out = 0;
+        for (int i = 0; i < n; i++) {
+            int ord = candidates[i];
+            if (containsAll(ord, terms)) candidates[out++] = ord;
+        }
+        return out == candidates.length ? candidates : Arrays.copyOf(candidates, out);
+    }
+
+    /**
+     * The subset of {@code candidates} (ascending ordinals) whose key contains
+     * every term of {@code query}. Used to narrow a previous result when the
+     * query grows.
+     */
+    public int[] filter(int[] candidates, String query) {
+        String[] terms = terms(query);
+        int[] out = new int[candidates.length];
+        int count = 0;
+        for (int ord : candidates) {
+            if (containsAll(ord, terms)) out[count++] = ord;
+        }
+        return count == out.length ? out : Arrays.copyOf(out, count);
+    }
+
+    /** Distinct whitespace-separated terms of a normalized query, in order. */
+    static String[] terms(String query) {
+        List<String> terms = new ArrayList<>(2);
+        int start = -1;
+        for (int i = 0, n = query.length(); i <= n; i++) {
+            boolean space = i == n || Character.isWhitespace(query.charAt(i));
+            if (!space && start < 0) {
+                start = i;
+            } else if (space && start >= 0) {
+                String term = query.substring(start, i);
+                if (!terms.contains(term)) terms.add(term);
+                start = -1;
+            }
+        }
+        return terms.toArray(new String[0]);
+    }
+
+    boolean containsAll(int ord, String[] terms) {
+        for (String term : terms) {
+            if (keys.indexOf(ord, term, 0) < 0) return false;
+        }
+        return true;
+    }
+
+    /** Longest query answered by a single posting list lookup. */
+    public static int exactGramLength() { return GRAM; }
+
+    /* Index of the gram in the sorted table, or -1 */
+    private int find(long gram) {
+        int lo = 0, hi = grams.limit() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long v = grams.get(mid);
+            if (v < gram) lo = mid + 1;
+            else if (v > gram) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private int length(int g) { return starts.get(g + 1) - starts.get(g); }
+
+    private int[] copy(int g) {
+        int from = starts.get(g);
+        int[] out = new int[starts.get(g + 1) - from];
+        for (int i = 0; i < out.length; i++) out[i] = postings.get(from + i);
+        return out;
+    }
+
+    /*
+     * Intersects acc[0..count) with posting list g in place; returns the new
+     * count. acc is the shorter side, so each of its values gallops ahead in
+     * the list (steps 1, 2, 4, ...) and binary-searches the last step:
+     * O(count log(list / count)) instead of a linear merge over the list.
+     */
+    private int intersect(int[] acc, int count, int g) {
+        int out = 0, lo = starts.get(g), end = starts.get(g + 1);
+        for (int i = 0; i < count && lo < end; i++) {
+            int v = acc[i];
+            if (postings.get(lo) < v) {
+                int step = 1, hi = lo + 1;
+                while (hi < end && postings.get(hi) < v) {
+                    lo = hi;
+                    step <<= 1;
+                    hi = lo + step;
+                }
+                // postings[lo] < v <= postings[hi] (or hi past the end)
+                hi = Math.min(hi, end);
+                lo++;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (postings.get(mid) < v) lo = mid + 1;
+                    else hi = mid;
+                }
+            }
+            if (lo < end && postings.get(lo) == v) {
+                acc[out++] = v;
+                lo++;
+            }
+        }
+        return out;
+    }
+
+    /* Length tag in the top bits keeps "ab" and "ab\0" distinct */
+    private static long pack(String s, int from, int len) {
+        long key = (long) len << 48;
+        for (int i = 0; i < len; i++) {
+            key |= (long) s.charAt(from + i) << (16 * (2 - i));
+        }
+        return key;
+    }
+
+    /* Growable int array used while building postings */
+    private static final class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+    }
+}
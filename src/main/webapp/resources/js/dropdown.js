@@ -53,12 +53,12 @@ function getNotifPopup(){ return byId("notifPopup"); }
 
 /* Source-of-truth (rebuilt from DOM when needed) */
 var notifLabels = [];
-var notifNodesByLabel = {};
+var notifNodesByLabel = Object.create(null);
 var notifVisibleCount = 0;
 
 /* ----- Counters: Option D (hide all) ----- */
 function hideAllCounters() {
-  var ids = ["eventCodesCounter","pickupTypeCounter","chipCounter"];
+  var ids = ["eventCodesCounter","pickupTypeCounter","storesCounter","chipCounter"];
   for (var i=0;i<ids.length;i++){
     var el = byId(ids[i]);
     if (el) el.style.display = "none";
@@ -71,7 +71,7 @@ function hydrateNotifModelFromDOM() {
   if (!container) return;
   var domChips = container.querySelectorAll(".chip[data-label]");
   notifLabels = [];
-  notifNodesByLabel = {};
+  notifNodesByLabel = Object.create(null);
   for (var i=0;i<domChips.length;i++){
     var node = domChips[i];
     var label = node.dataset ? node.dataset.label : node.getAttribute("data-label");
@@ -125,14 +125,78 @@ function handleChipBackspace(e){
   }
 }
 
+/* Accepts a plain array or a page {total, offset, items, spans}; later pages append */
 function onFetchNotifSuggestionsComplete(event, jsonData){
-  var results = [];
-  try { results = typeof jsonData === "string" ? JSON.parse(jsonData) : jsonData; }
-  catch(e){ results = []; }
-  renderNotifSuggestions(results);
+  var data = [];
+  try { data = typeof jsonData === "string" ? JSON.parse(jsonData) : jsonData; }
+  catch(e){ data = []; }
+  if (!data) data = [];
+
+  if (data instanceof Array) {
+    notifSuggestItems = data;
+    notifSuggestSpans = [];
+    notifSuggestTotal = data.length;
+  } else {
+    var items = data.items || [];
+    var spans = data.spans || [];
+    notifSuggestItems = data.offset > 0 ? notifSuggestItems.concat(items) : items;
+    notifSuggestSpans = data.offset > 0 ? notifSuggestSpans.concat(spans) : spans;
+    notifSuggestTotal = data.total || notifSuggestItems.length;
+  }
+  renderNotifSuggestions(notifSuggestItems, notifSuggestTotal, notifSuggestSpans);
+}
+
+/* Fills el with txt, wrapping the server's [start,length,...] ranges in <mark> */
+function appendHighlighted(el, txt, spans){
+  var pos = 0;
+  for (var i = 0; spans && i + 1 < spans.length; i += 2) {
+    var start = spans[i], end = spans[i] + spans[i + 1];
+    if (start < pos || end > txt.length) break;
+    if (start > pos) el.appendChild(document.createTextNode(txt.substring(pos, start)));
+    var m = document.createElement("mark");
+    m.textContent = txt.substring(start, end);
+    el.appendChild(m);
+    pos = end;
+  }
+  if (pos < txt.length) el.appendChild(document.createTextNode(txt.substring(pos)));
+}
+
+/* ---- Suggestions via /suggest servlet (no JSF view round trip) ---- */
+var NOTIF_SUGGEST_DELAY = 120;
+var NOTIF_SUGGEST_LIMIT = 50;
+var NOTIF_SUGGEST_FUZZY = (typeof NOTIF_SUGGEST_FUZZY === "boolean") ? NOTIF_SUGGEST_FUZZY : false;
+var notifSuggestTimer = null;
+var notifSuggestSeq = 0;
+var notifSuggestQuery = "";
+var notifSuggestItems = [];
+var notifSuggestSpans = [];
+var notifSuggestTotal = 0;
+
+function getNotifSuggestUrl(){
+  return (typeof NOTIF_SUGGEST_URL === "string") ? NOTIF_SUGGEST_URL : "suggest";
+}
+
+function queueNotifSuggestions(query){
+  if (notifSuggestTimer) clearTimeout(notifSuggestTimer);
+  notifSuggestTimer = setTimeout(function(){ fetchNotifSuggestions(query); }, NOTIF_SUGGEST_DELAY);
 }
 
-function renderNotifSuggestions(results){
+function fetchNotifSuggestions(query, offset){
+  var seq = ++notifSuggestSeq;
+  notifSuggestQuery = query || "";
+  var xhr = new XMLHttpRequest();
+  xhr.open("GET", getNotifSuggestUrl() + "?q=" + encodeURIComponent(notifSuggestQuery) +
+    "&offset=" + (offset || 0) + "&limit=" + NOTIF_SUGGEST_LIMIT +
+    (NOTIF_SUGGEST_FUZZY ? "&fuzzy=true" : ""), true);
+  xhr.onreadystatechange = function(){
+    if (xhr.readyState !== 4) return;
+    if (seq !== notifSuggestSeq) return; // a newer keystroke superseded this one
+    onFetchNotifSuggestionsComplete(null, xhr.status === 200 ? xhr.responseText : "[]");
+  };
+  xhr.send(null);
+}
+
+function renderNotifSuggestions(results, total, spans){
   var popup = getNotifPopup();
   var list = byId("notifList");
   if (!popup || !list) return;
@@ -162,12 +226,24 @@ function renderNotifSuggestions(results){
       })(txt));
 
       var lbl=document.createElement("span");
-      lbl.textContent=txt;
+      appendHighlighted(lbl, txt, spans && spans[i]);
       lbl.style.marginLeft="8px";
 
       row.appendChild(cb); row.appendChild(lbl);
       list.appendChild(row);
     }
+
+    if (total > results.length) {
+      var more=document.createElement("div");
+      more.className="notif-row";
+      more.textContent="Show more (" + (total - results.length) + " left)";
+      more.style.color="#2563eb";
+      more.onmousedown=function(e){
+        e.preventDefault();
+        fetchNotifSuggestions(notifSuggestQuery, notifSuggestItems.length);
+      };
+      list.appendChild(more);
+    }
   }
   positionNotifPopup();
   popup.style.display="block";
@@ -193,6 +269,32 @@ function clearAllNotifications(e){
   }
 }
 
+/* ---- Batched chip toggles: one request per burst (e.g. Select All) ---- */
+// no prototype: labels are catalog data and may be "__proto__" or "hasOwnProperty"
+var pendingNotifToggles = Object.create(null);
+var pendingNotifOrder = [];
+var notifToggleTimer = null;
+
+function queueNotifToggle(label, checked){
+  if (!(label in pendingNotifToggles)) pendingNotifOrder.push(label);
+  pendingNotifToggles[label] = checked;
+  if (!notifToggleTimer) notifToggleTimer = setTimeout(flushNotifToggles, 0);
+}
+
+/* Encodes changes as "+len:label" / "-len:label" so labels may hold any character */
+function flushNotifToggles(){
+  notifToggleTimer = null;
+  if (!pendingNotifOrder.length) return;
+  var parts = [];
+  for (var i=0;i<pendingNotifOrder.length;i++){
+    var label = pendingNotifOrder[i];
+    parts.push((pendingNotifToggles[label] ? "+" : "-") + label.length + ":" + label);
+  }
+  pendingNotifToggles = Object.create(null);
+  pendingNotifOrder = [];
+  if (typeof toggleNotifBatch==="function") toggleNotifBatch(parts.join(""));
+}
+
 /* ---- Chips ---- */
 
 var ABSOLUTE_MAX_CHIPS = 50;
@@ -225,7 +327,7 @@ function addChip(label){
   var container = getChipsContainer();
   if (container) container.appendChild(node);
 
-  if (typeof toggleNotif==="function") toggleNotif(label,true);
+  queueNotifToggle(label,true);
 
   renderNotifChips(true);
   positionNotifPopup();
@@ -259,7 +361,7 @@ function removeChip(label){
     }
   }
 
-  if (typeof toggleNotif==="function") toggleNotif(label,false);
+  queueNotifToggle(label,false);
 
   renderNotifChips(true);
   positionNotifPopup();
@@ -485,6 +587,8 @@ function selectAll(btn,flag){
 }
 
 /* ---- Init dropdowns ---- */
+var dropdownsDocumentBound = false;
+
 function initializeCustomDropdowns(){
   var dds=qAll(".rich-dropdown");
   for (var di=0;di<dds.length;di++){
@@ -519,6 +623,9 @@ function initializeCustomDropdowns(){
     updateDropdownChips(dd,boxes,labelText);
   }
 
+  // runs again after AJAX re-renders (event type switch); close-on-outside-click is bound once
+  if (dropdownsDocumentBound) return;
+  dropdownsDocumentBound = true;
   document.addEventListener("click",function(e){
     if (!e.target.closest || !e.target.closest(".rich-dropdown")){
       var all=qAll(".rich-dropdown");
@@ -531,26 +638,66 @@ function initializeCustomDropdowns(){
 function prepareFormSubmit(){
   var map={
     "eventCodes":"formId:selectedEventCodes",
-    "pickupType":"formId:selectedPickupTypes"
+    "pickupType":"formId:selectedPickupTypes",
+    "stores":"formId:selectedStores"
   };
 
-  var ids=["eventCodes","pickupType"];
+  var ids=["eventCodes","pickupType","stores"];
   for (var ii=0;ii<ids.length;ii++){
     var id = ids[ii];
     var dd=qSel("[data-dropdown-id='"+id+"']");
     if (!dd) continue;
-    var checked = dd.querySelectorAll(".dropdown-list input[type='checkbox']:checked");
-    var vals = [];
-    for (var ci=0;ci<checked.length;ci++){
-      var t = getCheckboxLabel(checked[ci]);
-      if (t) vals.push(t);
+    var boxes = dd.querySelectorAll(".dropdown-list input[type='checkbox']");
+    var ords = [];
+    for (var ci=0;ci<boxes.length;ci++){
+      if (!boxes[ci].checked) continue;
+      var lbl = boxes[ci].closest("label");
+      var ord = lbl ? parseInt(lbl.getAttribute("data-ord"),10) : NaN;
+      // no data-ord: the label is not in the rendered catalog, so there is nothing to select
+      // (its list position is not an ordinal: lists may show only part of the section)
+      if (!isNaN(ord)) ords.push(ord);
     }
     var hf=byId(map[id]);
-    if (hf) hf.value = vals.join(",");
+    if (hf) hf.value = encodeSelection(ords);
   }
   return true;
 }
 
+/* ---- COMPACT SELECTION FORMAT (see SelectionCodec.java) ----
+   "1r:" varint gap/length runs or "1b:" 6-bit bitmask, whichever is shorter */
+var SELECTION_ALPHABET="ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+
+function encodeSelection(ords){
+  ords = ords.slice().sort(function(a,b){ return a-b; });
+
+  var runs = "1r:", end = 0, i = 0;
+  while (i < ords.length){
+    var from = ords[i], to = from + 1;
+    while (++i < ords.length && ords[i] <= to){ if (ords[i] === to) to++; }
+    runs += selectionVarint(from - end) + selectionVarint(to - from);
+    end = to;
+  }
+
+  var symbols = ords.length ? Math.floor(ords[ords.length-1] / 6) + 1 : 0;
+  if (runs.length <= 3 + symbols) return runs;
+
+  var words = [];
+  for (var s=0;s<symbols;s++) words.push(0);
+  for (var k=0;k<ords.length;k++) words[Math.floor(ords[k] / 6)] |= 1 << (ords[k] % 6);
+  var mask = "1b:";
+  for (var w=0;w<symbols;w++) mask += SELECTION_ALPHABET.charAt(words[w]);
+  return mask;
+}
+
+function selectionVarint(value){
+  var out = "";
+  while (value >= 32){
+    out += SELECTION_ALPHABET.charAt(32 | (value & 31));
+    value = Math.floor(value / 32);
+  }
+  return out + SELECTION_ALPHABET.charAt(value);
+}
+
 /* ---- INIT ---- */
 window.addEventListener("load",function(){
   hideAllCounters();                 // Option D